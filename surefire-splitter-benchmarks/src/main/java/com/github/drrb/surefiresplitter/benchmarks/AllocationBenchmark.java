@@ -0,0 +1,87 @@
+/**
+ * Surefire Splitter Benchmarks
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter Benchmarks. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.benchmarks;
+
+import com.github.drrb.surefiresplitter.TestAllocator;
+import com.github.drrb.surefiresplitter.allocation.BalancedAllocationStrategy;
+import com.github.drrb.surefiresplitter.allocation.GreedyAllocationStrategy;
+import com.github.drrb.surefiresplitter.spi.AllocationStrategy;
+import com.github.drrb.surefiresplitter.spi.ReportRepo;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.drrb.surefiresplitter.AllocationConfig.allocationConfig;
+
+/**
+ * Packing tests into chunks, as done by each build that runs a chunk of the tests.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AllocationBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int tests;
+
+    @Param({"2", "16", "256"})
+    public int chunks;
+
+    @Param({GreedyAllocationStrategy.NAME, BalancedAllocationStrategy.NAME})
+    public String strategy;
+
+    private List<Class<?>> testClasses;
+    private ReportRepo history;
+    private AllocationStrategy allocationStrategy;
+    private PrintStream originalOut;
+
+    @Setup
+    public void setUp() {
+        testClasses = SyntheticTests.classes(tests);
+        history = SyntheticTests.history(testClasses, 1234L);
+        allocationStrategy = strategy.equals(BalancedAllocationStrategy.NAME) ? new BalancedAllocationStrategy() : new GreedyAllocationStrategy();
+        originalOut = System.out;
+        System.setOut(new PrintStream(new DiscardingOutputStream())); // The allocator prints a message every time
+    }
+
+    @TearDown
+    public void tearDown() {
+        System.setOut(originalOut);
+    }
+
+    @Benchmark
+    public Iterable<Class<?>> allocate() {
+        return new TestAllocator(allocationConfig().withExistingReports(history).withAllocationStrategy(allocationStrategy).chunk(1, chunks)).allocate(testClasses);
+    }
+
+    static class DiscardingOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
@@ -0,0 +1,61 @@
+/**
+ * Surefire Splitter Benchmarks
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter Benchmarks. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.benchmarks;
+
+import com.github.drrb.surefiresplitter.TestAllocator;
+import com.github.drrb.surefiresplitter.TestAllocator.UnableToSuggestTotalChunks;
+import com.github.drrb.surefiresplitter.spi.ReportRepo;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static com.github.drrb.surefiresplitter.AllocationConfig.allocationConfig;
+
+/**
+ * Working out the ideal number of chunks, which is done in the background during allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ChunkSuggestionBenchmark {
+
+    @Param({"1000", "10000", "100000"})
+    public int tests;
+
+    private List<Class<?>> testClasses;
+    private ReportRepo history;
+
+    @Setup
+    public void setUp() {
+        testClasses = SyntheticTests.classes(tests);
+        history = SyntheticTests.history(testClasses, 1234L);
+    }
+
+    @Benchmark
+    public int suggestedNumberOfChunks() {
+        try {
+            return new TestAllocator(allocationConfig().withExistingReports(history).chunk(1, 2)).suggestedNumberOfChunks(testClasses);
+        } catch (UnableToSuggestTotalChunks e) {
+            return -1; // Still had to pack the tests to find out
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Surefire Splitter Benchmarks
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter Benchmarks. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.benchmarks;
+
+import com.github.drrb.surefiresplitter.file.DirectoryReportRepo;
+import com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestSuite;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading test history from a directory of reports (-Dsurefire.existingReportsDir). When the directory is indexed, the
+ * index is written on the first invocation, so this measures reading it back.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class DirectoryReportRepoBenchmark {
+
+    @Param({"1000"})
+    public int reports;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    @Param({"false", "true"})
+    public boolean indexed;
+
+    private Path reportDir;
+    private Path indexDir;
+
+    @Setup
+    public void setUp() throws IOException {
+        reportDir = TempFiles.createTempDir("report-dir");
+        indexDir = TempFiles.createTempDir("report-index");
+        for (int i = 0; i < reports; i++) {
+            String className = SyntheticTests.className(i);
+            TempFiles.write(reportDir.resolve("TEST-" + className + ".xml"), SyntheticTests.report(className, 1.5, 10, 1024));
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        TempFiles.deleteRecursively(reportDir);
+        TempFiles.deleteRecursively(indexDir);
+    }
+
+    @Benchmark
+    public List<JunitTestSuite> getTestSuites() {
+        return new DirectoryReportRepo(reportDir.toString(), threads, indexed ? indexDir.resolve("report-index") : null).getTestSuites();
+    }
+}
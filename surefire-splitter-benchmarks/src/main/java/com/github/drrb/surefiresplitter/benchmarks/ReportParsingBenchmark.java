@@ -0,0 +1,62 @@
+/**
+ * Surefire Splitter Benchmarks
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter Benchmarks. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.benchmarks;
+
+import com.github.drrb.surefiresplitter.spi.JunitReport;
+import com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestSuite;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing a single Surefire report: a typical small one, and one with megabytes of captured output.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ReportParsingBenchmark {
+
+    @Param({"small", "large"})
+    public String report;
+
+    private Path reportDir;
+    private Path reportFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        reportDir = TempFiles.createTempDir("report-parsing");
+        reportFile = reportDir.resolve("TEST-com.example.ParsedTest.xml");
+        int outputBytesPerTestCase = "large".equals(report) ? 256 * 1024 : 0;
+        TempFiles.write(reportFile, SyntheticTests.report("com.example.ParsedTest", 12.5, 20, outputBytesPerTestCase));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        TempFiles.deleteRecursively(reportDir);
+    }
+
+    @Benchmark
+    public JunitTestSuite parse() throws JunitReport.ReadFailure {
+        return JunitReport.parse(reportFile);
+    }
+}
@@ -0,0 +1,140 @@
+/**
+ * Surefire Splitter Benchmarks
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter Benchmarks. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.benchmarks;
+
+import com.github.drrb.surefiresplitter.MemoryReportRepo;
+import com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestSuite;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import static com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestCase.testCase;
+import static com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestSuite.testSuite;
+
+/**
+ * Made-up test classes and reports, so that we can benchmark with as many tests as we like.
+ */
+public class SyntheticTests {
+
+    private static final String PACKAGE = "com.example.synthetic";
+
+    /**
+     * Defines empty classes (they only need names, because we never run them) in a new class loader.
+     */
+    public static List<Class<?>> classes(int count) {
+        SyntheticClassLoader classLoader = new SyntheticClassLoader();
+        List<Class<?>> classes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            classes.add(classLoader.define(className(i)));
+        }
+        return classes;
+    }
+
+    public static String className(int i) {
+        return String.format("%s.Synthetic%06dTest", PACKAGE, i);
+    }
+
+    /**
+     * A previous run of the tests, with durations spread out like a real test suite's: mostly quick tests, and a few
+     * slow ones.
+     */
+    public static MemoryReportRepo history(List<Class<?>> tests, long seed) {
+        Random random = new Random(seed);
+        MemoryReportRepo history = new MemoryReportRepo();
+        for (Class<?> test : tests) {
+            JunitTestSuite suite = testSuite()
+                    .withName(test.getName())
+                    .withTime(Math.exp(random.nextGaussian() * 1.5) * 0.5)
+                    .withTestCase(testCase().withName("shouldWork").withClassName(test.getName()).build())
+                    .build();
+            history.addTestSuite(suite);
+        }
+        return history;
+    }
+
+    /**
+     * A Surefire XML report, with some captured output from each test case.
+     */
+    public static String report(String className, double time, int testCases, int outputBytesPerTestCase) {
+        char[] output = new char[outputBytesPerTestCase];
+        Arrays.fill(output, 'x');
+        StringBuilder report = new StringBuilder()
+                .append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n")
+                .append(String.format(Locale.ROOT, "<testsuite name=\"%s\" time=\"%.3f\" tests=\"%d\" errors=\"0\" skipped=\"0\" failures=\"0\">%n", className, time, testCases))
+                .append("  <properties>\n")
+                .append("    <property name=\"java.runtime.name\" value=\"Java(TM) SE Runtime Environment\"/>\n")
+                .append("  </properties>\n");
+        for (int i = 0; i < testCases; i++) {
+            report.append(String.format(Locale.ROOT, "  <testcase name=\"shouldWork%d\" classname=\"%s\" time=\"%.3f\">%n", i, className, time / testCases));
+            if (outputBytesPerTestCase > 0) {
+                report.append("    <system-out><![CDATA[").append(output).append("]]></system-out>\n");
+            }
+            report.append("  </testcase>\n");
+        }
+        return report.append("</testsuite>\n").toString();
+    }
+
+    private static class SyntheticClassLoader extends ClassLoader {
+        SyntheticClassLoader() {
+            super(SyntheticTests.class.getClassLoader());
+        }
+
+        Class<?> define(String className) {
+            byte[] classFile = emptyClassFile(className.replace('.', '/'));
+            return defineClass(className, classFile, 0, classFile.length);
+        }
+
+        /**
+         * The smallest valid class file: a public class with no members, extending Object.
+         */
+        private static byte[] emptyClassFile(String internalName) {
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                DataOutputStream classFile = new DataOutputStream(bytes);
+                classFile.writeInt(0xCAFEBABE);
+                classFile.writeShort(0); // Minor version
+                classFile.writeShort(51); // Major version (Java 7)
+                classFile.writeShort(5); // Constant pool size (plus one)
+                classFile.writeByte(7); // #1: this class
+                classFile.writeShort(2);
+                classFile.writeByte(1); // #2: this class's name
+                classFile.writeUTF(internalName);
+                classFile.writeByte(7); // #3: superclass
+                classFile.writeShort(4);
+                classFile.writeByte(1); // #4: superclass's name
+                classFile.writeUTF("java/lang/Object");
+                classFile.writeShort(0x0021); // public super
+                classFile.writeShort(1); // This class
+                classFile.writeShort(3); // Superclass
+                classFile.writeShort(0); // Interfaces
+                classFile.writeShort(0); // Fields
+                classFile.writeShort(0); // Methods
+                classFile.writeShort(0); // Attributes
+                return bytes.toByteArray();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/**
+ * Surefire Splitter Benchmarks
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter Benchmarks. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.go;
+
+import com.github.drrb.surefiresplitter.benchmarks.SyntheticTests;
+import com.github.drrb.surefiresplitter.benchmarks.TempFiles;
+import com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestSuite;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloading the reports from the previous run of a split job from a (fake, local) Go server, with nothing cached.
+ * <p>
+ * This is in the Go plugin's package so that it can point the plugin at the fake server.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class GoDownloadBenchmark {
+
+    private static final int SPLITS = 3;
+
+    @Param({"100"})
+    public int reportsPerSplit;
+
+    @Param({"1", "4"})
+    public int downloadThreads;
+
+    @Param({"false", "true"})
+    public boolean zips;
+
+    private Path baseDir;
+    private Path workingDir;
+    private FakeGoServer server;
+    private Map<String, String> env;
+
+    @Setup
+    public void setUp() throws IOException {
+        baseDir = TempFiles.createTempDir("go-download");
+        Path serverPipelinesDir = baseDir.resolve("server");
+        Path previousStageRun = serverPipelinesDir.resolve("PipelineName").resolve("1").resolve("StageName").resolve("1");
+        TempFiles.write(previousStageRun.resolve("stage-result.txt"), "Passed");
+        for (int split = 1; split <= SPLITS; split++) {
+            for (int i = 0; i < reportsPerSplit; i++) {
+                String className = SyntheticTests.className(split * reportsPerSplit + i);
+                Path report = previousStageRun.resolve("JobName-runInstance-" + split).resolve("test-reports").resolve("TEST-" + className + ".xml");
+                TempFiles.write(report, SyntheticTests.report(className, 1.5, 10, 1024));
+            }
+        }
+
+        server = new FakeGoServer(0, serverPipelinesDir);
+        server.start();
+
+        Path agentDir = baseDir.resolve("agent");
+        Path agentConfigDir = Files.createDirectories(agentDir.resolve("config"));
+        server.downloadAgentKeyStores(agentConfigDir);
+        workingDir = Files.createDirectories(agentDir.resolve("pipelines").resolve("PipelineName"));
+
+        env = new HashMap<>();
+        env.put("GO_SERVER_URL", "https://localhost:" + server.getServer().getPort() + "/go/");
+        env.put("GO_PIPELINE_NAME", "PipelineName");
+        env.put("GO_PIPELINE_COUNTER", "2");
+        env.put("GO_STAGE_NAME", "StageName");
+        env.put("GO_STAGE_COUNTER", "1");
+        env.put("GO_JOB_NAME", "JobName-runInstance-1");
+        env.put("GO_USERNAME", "admin");
+        env.put("GO_PASSWORD", "badger");
+        env.put("SUREFIRE_SPLITTER_DOWNLOAD_THREADS", String.valueOf(downloadThreads));
+        env.put("SUREFIRE_SPLITTER_DOWNLOAD_ZIPS", String.valueOf(zips));
+    }
+
+    @Setup(Level.Invocation)
+    public void clearDownloadCache() throws IOException {
+        TempFiles.deleteRecursively(workingDir.getParent().resolve(".go-downloads"));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        server.stop();
+        TempFiles.deleteRecursively(baseDir);
+    }
+
+    @Benchmark
+    public List<JunitTestSuite> downloadTestHistory() {
+        return new GoReportRepo.Provider(env, workingDir).getExistingReports().getTestSuites();
+    }
+}
@@ -19,19 +19,33 @@ package com.github.drrb.surefiresplitter.file;
 
 import com.github.drrb.surefiresplitter.file.util.ListDirectory;
 import com.github.drrb.surefiresplitter.spi.JunitReport;
+import com.github.drrb.surefiresplitter.spi.FingerprintedReportRepo;
 import com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestSuite;
 import com.github.drrb.surefiresplitter.spi.ReportRepo;
 import com.github.drrb.surefiresplitter.spi.ReportRepoProvider;
 
 import java.io.IOException;
-import java.nio.file.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static com.github.drrb.surefiresplitter.spi.FileFilters.XML_FILES;
 import static java.nio.file.Files.isDirectory;
 
-public class DirectoryReportRepo implements ReportRepo {
+public class DirectoryReportRepo implements FingerprintedReportRepo {
 
     public static class Provider implements ReportRepoProvider {
 
@@ -42,7 +56,23 @@ public class DirectoryReportRepo implements ReportRepo {
 
         @Override
         public ReportRepo getExistingReports() {
-            return new DirectoryReportRepo(getReportDirectory());
+            return new DirectoryReportRepo(getReportDirectory(), getParallelism(), getIndexFile());
+        }
+
+        private Path getIndexFile() {
+            if ("false".equals(System.getProperty("surefire.existingReportsIndex"))) {
+                return null;
+            }
+            String indexDirectory = System.getProperty("surefire.existingReportsIndexDir");
+            if (indexDirectory == null) {
+                // Surefire sets the module's base directory, which isn't necessarily the working directory
+                return ReportIndex.fileFor(getReportDirectory(), Paths.get(System.getProperty("basedir", ""), "target", "surefire-splitter"));
+            }
+            return ReportIndex.fileFor(getReportDirectory(), Paths.get(indexDirectory));
+        }
+
+        private int getParallelism() {
+            return Integer.getInteger("surefire.existingReportsThreads", Runtime.getRuntime().availableProcessors());
         }
 
         private Path getReportDirectory() {
@@ -60,30 +90,161 @@ public class DirectoryReportRepo implements ReportRepo {
     }
 
     private final Path directory;
+    private final int parallelism;
+    private final Path indexFile;
 
     public DirectoryReportRepo(String directory) {
-        this(Paths.get(directory));
+        this(directory, 1);
     }
 
-    private DirectoryReportRepo(Path directory) {
+    public DirectoryReportRepo(String directory, int parallelism) {
+        this(directory, parallelism, null);
+    }
+
+    /**
+     * @param indexFile where to keep an index of parsed reports (see {@link ReportIndex}), so that unchanged reports
+     *                  don't need to be parsed again next time, or <code>null</code> to parse them all every time
+     */
+    public DirectoryReportRepo(String directory, int parallelism, Path indexFile) {
+        this(Paths.get(directory), parallelism, indexFile);
+    }
+
+    private DirectoryReportRepo(Path directory, int parallelism, Path indexFile) {
         if (!isDirectory(directory)) {
             throw new IllegalArgumentException("directory: Expected a directory, got " + directory);
         }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism: Expected at least 1 thread, got " + parallelism);
+        }
         this.directory = directory;
+        this.parallelism = parallelism;
+        this.indexFile = indexFile;
     }
 
     public List<JunitTestSuite> getTestSuites() {
+        List<Path> reportFiles = getReportFiles();
+        ReportIndex oldIndex = indexFile == null ? ReportIndex.empty() : ReportIndex.load(indexFile);
+
+        List<Path> filesToParse = new LinkedList<>();
+        for (Path reportFile : reportFiles) {
+            if (!isIndexed(reportFile, oldIndex)) {
+                filesToParse.add(reportFile);
+            }
+        }
+        Map<Path, JunitTestSuite> parsedReports = parallelism == 1 || filesToParse.size() < 2
+                ? parseSerially(filesToParse)
+                : parseInParallel(filesToParse);
+
         List<JunitTestSuite> reports = new LinkedList<>();
-        for (Path reportFile : getReportFiles()) {
+        Map<String, ReportIndex.Entry> newIndexEntries = new HashMap<>();
+        for (Path reportFile : reportFiles) {
+            ReportIndex.Entry entry = parsedReports.containsKey(reportFile)
+                    ? newIndexEntry(reportFile, parsedReports.get(reportFile))
+                    : oldIndex.get(reportFile);
+            if (entry != null) {
+                reports.add(entry.getTestSuite());
+                newIndexEntries.put(reportFile.getFileName().toString(), entry);
+            }
+        }
+
+        ReportIndex newIndex = new ReportIndex(newIndexEntries);
+        if (indexFile != null && (!parsedReports.isEmpty() || !newIndex.hasSameReportsAs(oldIndex))) {
+            newIndex.save(indexFile);
+        }
+        return reports;
+    }
+
+    /**
+     * Identifies the reports by their names, sizes and modification times, like the index does.
+     */
+    @Override
+    public String getFingerprint() {
+        StringBuilder fingerprint = new StringBuilder(directory.toAbsolutePath().toString());
+        try {
+            for (Path reportFile : new TreeSet<>(getReportFiles())) {
+                fingerprint.append('\n')
+                        .append(reportFile.getFileName())
+                        .append(' ').append(Files.size(reportFile))
+                        .append(' ').append(Files.getLastModifiedTime(reportFile).toMillis());
+            }
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+        return fingerprint.toString();
+    }
+
+    private static boolean isIndexed(Path reportFile, ReportIndex index) {
+        ReportIndex.Entry entry = index.get(reportFile);
+        try {
+            return entry != null && entry.isUpToDateWith(reportFile);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static ReportIndex.Entry newIndexEntry(Path reportFile, JunitTestSuite testSuite) {
+        try {
+            return ReportIndex.Entry.forFile(reportFile, testSuite);
+        } catch (IOException e) {
+            // The file's gone away since we parsed it. Use the report, but make sure it gets re-read next time.
+            return new ReportIndex.Entry(-1, -1, testSuite);
+        }
+    }
+
+    private Map<Path, JunitTestSuite> parseSerially(List<Path> reportFiles) {
+        Map<Path, JunitTestSuite> reports = new HashMap<>();
+        for (Path reportFile : reportFiles) {
             try {
-                reports.add(JunitReport.parse(reportFile));
+                reports.put(reportFile, JunitReport.parse(reportFile));
             } catch (JunitReport.ReadFailure readFailure) {
-                System.out.println(readFailure + " (" + readFailure.getCause() + ")");
+                logFailure(readFailure);
             }
         }
         return reports;
     }
 
+    /**
+     * Parses the reports on a pool of (at most) <code>parallelism</code> threads. Any failures are logged in the order
+     * the files were listed in, so the output is the same as when parsing serially.
+     */
+    private Map<Path, JunitTestSuite> parseInParallel(List<Path> reportFiles) {
+        ExecutorService parsers = Executors.newFixedThreadPool(Math.min(parallelism, reportFiles.size()), new ParserThreadFactory());
+        try {
+            List<Future<JunitTestSuite>> parsedReports = new ArrayList<>(reportFiles.size());
+            for (final Path reportFile : reportFiles) {
+                parsedReports.add(parsers.submit(new Callable<JunitTestSuite>() {
+                    @Override
+                    public JunitTestSuite call() throws JunitReport.ReadFailure {
+                        return JunitReport.parse(reportFile);
+                    }
+                }));
+            }
+
+            Map<Path, JunitTestSuite> reports = new HashMap<>();
+            for (int i = 0; i < reportFiles.size(); i++) {
+                try {
+                    reports.put(reportFiles.get(i), parsedReports.get(i).get());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof JunitReport.ReadFailure) {
+                        logFailure((JunitReport.ReadFailure) e.getCause());
+                    } else {
+                        throw new RuntimeException("Failed to parse JUnit reports in '" + directory + "'", e.getCause());
+                    }
+                }
+            }
+            return reports;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while parsing JUnit reports in '" + directory + "'", e);
+        } finally {
+            parsers.shutdownNow();
+        }
+    }
+
+    private static void logFailure(JunitReport.ReadFailure readFailure) {
+        System.out.println(readFailure + " (" + readFailure.getCause() + ")");
+    }
+
     private List<Path> getReportFiles() {
         try {
             return ListDirectory.listDirectory(directory, XML_FILES);
@@ -91,4 +252,15 @@ public class DirectoryReportRepo implements ReportRepo {
             throw new RuntimeException("Couldn't read from JUnit report directory '" + directory + "'", e);
         }
     }
+
+    private static class ParserThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "surefire-splitter-report-parser-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
@@ -0,0 +1,198 @@
+/**
+ * Surefire Splitter File Plugin
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter File Plugin. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.file;
+
+import com.github.drrb.surefiresplitter.spi.CompactReport;
+import com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestSuite;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.READ;
+
+/**
+ * A binary index of the parsed reports in a report directory, kept in a file in the build directory (not next to the
+ * reports, which might be checked in or shared) so that we only have to parse reports that have been added or changed
+ * since the last time we looked.
+ * <p>
+ * Each report is stored along with the last modified time and size of its file, and is considered out of date if
+ * either of them change.
+ */
+class ReportIndex {
+
+    private static final int MAGIC_NUMBER = 0x53535249;
+    private static final int VERSION = 1;
+
+    static class Entry {
+        private final long lastModified;
+        private final long size;
+        private final JunitTestSuite testSuite;
+
+        Entry(long lastModified, long size, JunitTestSuite testSuite) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.testSuite = testSuite;
+        }
+
+        static Entry forFile(Path file, JunitTestSuite testSuite) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return new Entry(attributes.lastModifiedTime().toMillis(), attributes.size(), testSuite);
+        }
+
+        boolean isUpToDateWith(Path file) throws IOException {
+            BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            return attributes.lastModifiedTime().toMillis() == lastModified && attributes.size() == size;
+        }
+
+        JunitTestSuite getTestSuite() {
+            return testSuite;
+        }
+    }
+
+    static ReportIndex empty() {
+        return new ReportIndex(Collections.<String, Entry>emptyMap());
+    }
+
+    /**
+     * @return where to keep the index for a report directory, in the index directory (which can be shared between
+     * report directories), named after a hash of the report directory's path that's long enough not to clash
+     */
+    static Path fileFor(Path reportDirectory, Path indexDirectory) {
+        String reportDirectoryName = reportDirectory.toAbsolutePath().normalize().toString();
+        return indexDirectory.resolve("report-index-" + sha1(reportDirectoryName));
+    }
+
+    private static String sha1(String text) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(text.getBytes(UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-1 should always be available", e);
+        }
+    }
+
+    static ReportIndex load(Path indexFile) {
+        if (!Files.isRegularFile(indexFile)) {
+            return empty();
+        }
+        try (FileChannel channel = FileChannel.open(indexFile, READ)) {
+            ByteBuffer contents = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new ReportIndex(read(new DataInputStream(new ByteBufferInputStream(contents))));
+        } catch (IOException e) {
+            System.out.println("Couldn't read report index '" + indexFile + "': re-reading all reports (" + e + ")");
+            return empty();
+        }
+    }
+
+    private static Map<String, Entry> read(DataInput input) throws IOException {
+        if (input.readInt() != MAGIC_NUMBER || input.readInt() != VERSION || input.readInt() != CompactReport.FORMAT_VERSION) {
+            throw new IOException("Unrecognized index format");
+        }
+        int numberOfEntries = input.readInt();
+        Map<String, Entry> entries = new HashMap<>(numberOfEntries * 2);
+        for (int i = 0; i < numberOfEntries; i++) {
+            String fileName = input.readUTF();
+            long lastModified = input.readLong();
+            long size = input.readLong();
+            entries.put(fileName, new Entry(lastModified, size, CompactReport.read(input)));
+        }
+        return entries;
+    }
+
+    private final Map<String, Entry> entries;
+
+    ReportIndex(Map<String, Entry> entries) {
+        this.entries = entries;
+    }
+
+    Entry get(Path reportFile) {
+        return entries.get(reportFile.getFileName().toString());
+    }
+
+    boolean hasSameReportsAs(ReportIndex that) {
+        return this.entries.keySet().equals(that.entries.keySet());
+    }
+
+    void save(Path indexFile) {
+        try {
+            Files.createDirectories(indexFile.toAbsolutePath().getParent());
+            Path tempFile = Files.createTempFile(indexFile.toAbsolutePath().getParent(), indexFile.getFileName().toString(), ".tmp");
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                write(output);
+            } catch (IOException e) {
+                Files.deleteIfExists(tempFile);
+                throw e;
+            }
+            Files.move(tempFile, indexFile, ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.out.println("Couldn't save report index '" + indexFile + "': reports will be re-read next time (" + e + ")");
+        }
+    }
+
+    private void write(DataOutput output) throws IOException {
+        output.writeInt(MAGIC_NUMBER);
+        output.writeInt(VERSION);
+        output.writeInt(CompactReport.FORMAT_VERSION);
+        output.writeInt(entries.size());
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            output.writeUTF(entry.getKey());
+            output.writeLong(entry.getValue().lastModified);
+            output.writeLong(entry.getValue().size);
+            CompactReport.write(entry.getValue().testSuite, output);
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int bytesRead = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, bytesRead);
+            return bytesRead;
+        }
+    }
+}
@@ -24,14 +24,21 @@ import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
 import java.util.List;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.rules.ExpectedException.none;
 
 public class DirectoryReportRepoTest {
 
+    private static final String SAMPLE_REPORTS = "src/test/resources/com/github/drrb/surefiresplitter/sample-reports";
+
     @Rule
     public final TemporaryFolder tempDir = new TemporaryFolder();
 
@@ -40,10 +47,79 @@ public class DirectoryReportRepoTest {
 
     @Test
     public void readsAllXmlFilesInDir() throws Exception {
-        List<JunitTestSuite> parsedReports = new DirectoryReportRepo("src/test/resources/com/github/drrb/surefiresplitter/sample-reports").getTestSuites();
+        List<JunitTestSuite> parsedReports = new DirectoryReportRepo(SAMPLE_REPORTS).getTestSuites();
         assertThat(parsedReports.size(), is(9));
     }
 
+    @Test
+    public void readsReportsInParallelInTheSameOrderAsSerially() throws Exception {
+        List<JunitTestSuite> serialReports = new DirectoryReportRepo(SAMPLE_REPORTS, 1).getTestSuites();
+        List<JunitTestSuite> parallelReports = new DirectoryReportRepo(SAMPLE_REPORTS, 4).getTestSuites();
+        assertThat(parallelReports.size(), is(9));
+        for (int i = 0; i < serialReports.size(); i++) {
+            assertThat(parallelReports.get(i).getName(), is(serialReports.get(i).getName()));
+            assertThat(parallelReports.get(i).getTime(), is(serialReports.get(i).getTime()));
+        }
+    }
+
+    @Test
+    public void indexesReportsSoThatUnchangedOnesDontHaveToBeParsedAgain() throws Exception {
+        Path reportsDir = copyOfSampleReports();
+        Path report = reportsDir.resolve("TEST-com.github.tlb.sampleprojects.CommutativeTest.xml");
+        Path indexFile = tempDir.getRoot().toPath().resolve("target/surefire-splitter/report-index");
+        DirectoryReportRepo repo = new DirectoryReportRepo(reportsDir.toString(), 1, indexFile);
+
+        assertThat(timeOf("com.github.tlb.sampleprojects.CommutativeTest", repo.getTestSuites()), is(0.012));
+        assertThat(Files.exists(indexFile), is(true));
+        assertThat(reportsDir.toFile().list().length, is(new File(SAMPLE_REPORTS).list().length));
+
+        // Same size, same modification time: the index should be trusted
+        rewrite(report, "time=\"0.012\"", "time=\"0.099\"", true);
+        assertThat(timeOf("com.github.tlb.sampleprojects.CommutativeTest", repo.getTestSuites()), is(0.012));
+        assertThat(repo.getTestSuites().size(), is(9));
+
+        // Modified: the report should be read again
+        rewrite(report, "time=\"0.099\"", "time=\"0.077\"", false);
+        assertThat(timeOf("com.github.tlb.sampleprojects.CommutativeTest", repo.getTestSuites()), is(0.077));
+    }
+
+    @Test
+    public void dropsDeletedReportsFromTheIndex() throws Exception {
+        Path reportsDir = copyOfSampleReports();
+        Path indexFile = tempDir.getRoot().toPath().resolve("report-index");
+        DirectoryReportRepo repo = new DirectoryReportRepo(reportsDir.toString(), 1, indexFile);
+        assertThat(repo.getTestSuites().size(), is(9));
+
+        Files.delete(reportsDir.resolve("TEST-com.github.tlb.sampleprojects.CommutativeTest.xml"));
+        assertThat(repo.getTestSuites().size(), is(8));
+        assertThat(new DirectoryReportRepo(reportsDir.toString(), 1, indexFile).getTestSuites().size(), is(8));
+    }
+
+    @Test
+    public void keepsASeparateIndexForEachReportDirectory() throws Exception {
+        Path indexDir = tempDir.getRoot().toPath().resolve("target/surefire-splitter");
+        // "Aa" and "BB" have the same String hash code
+        Path firstReportsDir = tempDir.getRoot().toPath().resolve("Aa");
+        Path secondReportsDir = tempDir.getRoot().toPath().resolve("BB");
+        assertThat(ReportIndex.fileFor(firstReportsDir, indexDir).equals(ReportIndex.fileFor(secondReportsDir, indexDir)), is(false));
+        assertThat(ReportIndex.fileFor(firstReportsDir.resolve("../Aa"), indexDir), is(ReportIndex.fileFor(firstReportsDir, indexDir)));
+    }
+
+    @Test
+    public void fingerprintChangesWhenReportsChange() throws Exception {
+        Path reportsDir = copyOfSampleReports();
+        DirectoryReportRepo repo = new DirectoryReportRepo(reportsDir.toString());
+        String originalFingerprint = repo.getFingerprint();
+        assertThat(repo.getFingerprint(), is(originalFingerprint));
+
+        rewrite(reportsDir.resolve("TEST-com.github.tlb.sampleprojects.CommutativeTest.xml"), "time=\"0.012\"", "time=\"9.999\"", false);
+        String modifiedFingerprint = repo.getFingerprint();
+        assertThat(modifiedFingerprint.equals(originalFingerprint), is(false));
+
+        Files.delete(reportsDir.resolve("TEST-com.github.tlb.sampleprojects.CommutativeTest.xml"));
+        assertThat(repo.getFingerprint().equals(modifiedFingerprint), is(false));
+    }
+
     @Test
     public void raisesExceptionIfDirectoryNotReadable() throws Exception {
         File reportsDir = tempDir.newFolder("reports");
@@ -53,4 +129,28 @@ public class DirectoryReportRepoTest {
         exceptions.expectMessage("Couldn't read from JUnit report directory");
         repo.getTestSuites();
     }
+
+    private Path copyOfSampleReports() throws IOException {
+        Path reportsDir = tempDir.newFolder("reports").toPath();
+        for (File sampleReport : new File(SAMPLE_REPORTS).listFiles()) {
+            Files.copy(sampleReport.toPath(), reportsDir.resolve(sampleReport.getName()));
+        }
+        return reportsDir;
+    }
+
+    private void rewrite(Path file, String target, String replacement, boolean keepModificationTime) throws IOException {
+        FileTime lastModified = Files.getLastModifiedTime(file);
+        String contents = new String(Files.readAllBytes(file), UTF_8);
+        Files.write(file, contents.replace(target, replacement).getBytes(UTF_8));
+        Files.setLastModifiedTime(file, keepModificationTime ? lastModified : FileTime.fromMillis(lastModified.toMillis() + 2000));
+    }
+
+    private Double timeOf(String testSuiteName, List<JunitTestSuite> testSuites) {
+        for (JunitTestSuite testSuite : testSuites) {
+            if (testSuite.getName().equals(testSuiteName)) {
+                return testSuite.getTime();
+            }
+        }
+        return null;
+    }
 }
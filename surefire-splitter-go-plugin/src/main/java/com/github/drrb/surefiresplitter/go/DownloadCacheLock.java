@@ -0,0 +1,122 @@
+/**
+ * Surefire Splitter Go Plugin
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter Go Plugin. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.go;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * A lock on the download cache, shared by everyone that's downloading into it or reading from it (e.g. Surefire's
+ * forks, or other builds on the same agent), so that it doesn't get tidied up under their feet. Tidying up needs the
+ * lock to itself, so it's skipped while anyone else is using the cache, and left to whoever finishes last.
+ * <p>
+ * File locks belong to the whole JVM, so there's one of these for each download cache in the JVM, and it counts how
+ * many times it's being used.
+ */
+class DownloadCacheLock {
+
+    static final String FILE_NAME = ".lock";
+    private static final Map<Path, DownloadCacheLock> LOCKS = new HashMap<>();
+
+    static DownloadCacheLock in(Path baseDir) {
+        Path file = baseDir.toAbsolutePath().normalize().resolve(FILE_NAME);
+        synchronized (LOCKS) {
+            DownloadCacheLock lock = LOCKS.get(file);
+            if (lock == null) {
+                lock = new DownloadCacheLock(file);
+                LOCKS.put(file, lock);
+            }
+            return lock;
+        }
+    }
+
+    private final Path file;
+    private FileChannel channel;
+    private int users;
+
+    private DownloadCacheLock(Path file) {
+        this.file = file;
+    }
+
+    /**
+     * Waits until the cache isn't being tidied up, then stops it being tidied up until {@link #release()} is called.
+     */
+    synchronized void use() throws IOException {
+        if (users == 0) {
+            FileChannel channel = FileChannel.open(file, CREATE, READ, WRITE);
+            try {
+                channel.lock(0, Long.MAX_VALUE, true);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+            this.channel = channel;
+        }
+        users++;
+    }
+
+    synchronized void release() {
+        if (users == 0) {
+            return;
+        }
+        users--;
+        if (users == 0) {
+            try {
+                channel.close(); // Releases the lock too
+            } catch (IOException e) {
+                System.out.println("Couldn't release download cache lock '" + file + "' (" + e + ")");
+            }
+            channel = null;
+        }
+    }
+
+    /**
+     * Tidies up the cache, unless someone else is using it.
+     *
+     * @return whether the cache was tidied up
+     */
+    synchronized boolean tidyUp(Runnable tidyUp) {
+        if (users > 0) {
+            return false;
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            try (FileChannel channel = FileChannel.open(file, CREATE, READ, WRITE); FileLock lock = channel.tryLock()) {
+                if (lock == null) {
+                    System.out.println("Not tidying up the download cache: another process is using it");
+                    return false;
+                }
+                tidyUp.run();
+                return true;
+            }
+        } catch (IOException | OverlappingFileLockException e) {
+            System.out.println("Couldn't lock the download cache to tidy it up (" + e + ")");
+            return false;
+        }
+    }
+}
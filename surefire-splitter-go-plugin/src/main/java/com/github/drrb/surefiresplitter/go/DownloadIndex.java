@@ -0,0 +1,289 @@
+/**
+ * Surefire Splitter Go Plugin
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter Go Plugin. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.go;
+
+import com.github.drrb.surefiresplitter.go.util.Bytes;
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.nio.file.FileVisitResult.CONTINUE;
+import static java.nio.file.FileVisitResult.SKIP_SUBTREE;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * A binary index of the files in the download cache, with their sizes and when they were last used, so that we can
+ * keep the cache to a size and age limit without walking the whole tree.
+ * <p>
+ * Other processes on the agent may be using the cache at the same time, so when we save the index we start from
+ * what's on disk and only apply what we've done since we loaded it. Anything saved alongside a download (e.g. its
+ * parsed copy) counts towards its size and is deleted with it.
+ */
+class DownloadIndex {
+
+    static final String FILE_NAME = ".download-index";
+    private static final int MAGIC_NUMBER = 0x53534449;
+    private static final int VERSION = 1;
+
+    private static class Entry {
+        private final long size;
+        private final long lastUsed;
+
+        Entry(long size, long lastUsed) {
+            this.size = size;
+            this.lastUsed = lastUsed;
+        }
+    }
+
+    /**
+     * Loads the index of the download cache, building it from the files that are there if there isn't one yet (e.g.
+     * the first time this runs on an agent that has been downloading reports for a while).
+     */
+    static DownloadIndex load(Path baseDir) {
+        Path indexFile = baseDir.resolve(FILE_NAME);
+        if (Files.isRegularFile(indexFile)) {
+            try {
+                return new DownloadIndex(baseDir, read(indexFile));
+            } catch (IOException e) {
+                System.out.println("Couldn't read download index '" + indexFile + "': rebuilding it (" + e + ")");
+            }
+        }
+        return new DownloadIndex(baseDir, scan(baseDir));
+    }
+
+    private final Path baseDir;
+    private final ConcurrentMap<String, Entry> entries;
+    private final Set<String> usedThisTime = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    private DownloadIndex(Path baseDir, Map<String, Entry> entries) {
+        this.baseDir = baseDir;
+        this.entries = new ConcurrentHashMap<>(entries);
+    }
+
+    void used(Path download) {
+        String key = getKey(download);
+        Entry entry = entries.get(key);
+        long size = entry == null ? sizeOf(download) : entry.size;
+        entries.put(key, new Entry(size, System.currentTimeMillis()));
+        usedThisTime.add(key);
+    }
+
+    /**
+     * Records that something has been saved alongside a download.
+     */
+    void resized(Path download) {
+        entries.put(getKey(download), new Entry(sizeOf(download), System.currentTimeMillis()));
+        usedThisTime.add(getKey(download));
+    }
+
+    /**
+     * Deletes the downloads that haven't been used for longer than the maximum age, then the least recently used ones
+     * until the rest fit in the budget, and saves the index. Downloads that we've used since we loaded the index are
+     * never deleted, because they may not have been read yet. Only call this while nobody else is using the cache
+     * (see {@link DownloadCacheLock}): their downloads aren't in the index until they've finished.
+     */
+    void tidyUp(long maxBytes, long maxAgeMillis) {
+        Map<String, Entry> latestEntries = loadLatestEntries();
+        List<Map.Entry<String, Entry>> leastRecentlyUsedFirst = new ArrayList<>(latestEntries.entrySet());
+        Collections.sort(leastRecentlyUsedFirst, new Comparator<Map.Entry<String, Entry>>() {
+            @Override
+            public int compare(Map.Entry<String, Entry> a, Map.Entry<String, Entry> b) {
+                return Long.compare(a.getValue().lastUsed, b.getValue().lastUsed);
+            }
+        });
+        long totalBytes = 0;
+        for (Entry entry : latestEntries.values()) {
+            totalBytes += entry.size;
+        }
+
+        long oldestAllowed = System.currentTimeMillis() - maxAgeMillis;
+        int evicted = 0;
+        long evictedBytes = 0;
+        for (Map.Entry<String, Entry> entry : leastRecentlyUsedFirst) {
+            boolean tooOld = entry.getValue().lastUsed < oldestAllowed;
+            if ((!tooOld && totalBytes <= maxBytes) || usedThisTime.contains(entry.getKey())) {
+                continue;
+            }
+            delete(baseDir.resolve(entry.getKey()));
+            latestEntries.remove(entry.getKey());
+            totalBytes -= entry.getValue().size;
+            evicted++;
+            evictedBytes += entry.getValue().size;
+        }
+        if (evicted > 0) {
+            System.out.println(String.format("Evicted %d downloads (%s) from the download cache, leaving %s", evicted, Bytes.render(evictedBytes), Bytes.render(totalBytes)));
+        }
+
+        entries.clear();
+        entries.putAll(latestEntries);
+        write();
+    }
+
+    /**
+     * Saves the index, with what we've used since we loaded it, so that it isn't evicted by the next tidy-up.
+     */
+    void save() {
+        Map<String, Entry> latestEntries = loadLatestEntries();
+        entries.clear();
+        entries.putAll(latestEntries);
+        write();
+    }
+
+    private Map<String, Entry> loadLatestEntries() {
+        Map<String, Entry> latestEntries = new HashMap<>();
+        Path indexFile = baseDir.resolve(FILE_NAME);
+        if (Files.isRegularFile(indexFile)) {
+            try {
+                latestEntries.putAll(read(indexFile));
+            } catch (IOException e) {
+                latestEntries.putAll(entries);
+            }
+        } else {
+            latestEntries.putAll(entries);
+        }
+        for (String key : usedThisTime) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                latestEntries.put(key, entry);
+            }
+        }
+        return latestEntries;
+    }
+
+    private void delete(Path download) {
+        try {
+            Files.deleteIfExists(download);
+            Files.deleteIfExists(download.resolveSibling(download.getFileName() + GoServer.DownloadCache.PARSED_REPORT_SUFFIX));
+            for (Path dir = download.getParent(); !dir.equals(baseDir); dir = dir.getParent()) {
+                Files.delete(dir);
+            }
+        } catch (DirectoryNotEmptyException e) {
+            // Other downloads still in there
+        } catch (IOException e) {
+            System.out.println("Couldn't delete '" + download + "' from the download cache (" + e + ")");
+        }
+    }
+
+    private void write() {
+        Path indexFile = baseDir.resolve(FILE_NAME);
+        try {
+            Path tempFile = Files.createTempFile(baseDir, FILE_NAME, ".tmp");
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                write(output);
+            } catch (IOException e) {
+                Files.deleteIfExists(tempFile);
+                throw e;
+            }
+            Files.move(tempFile, indexFile, ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.out.println("Couldn't save download index '" + indexFile + "' (" + e + ")");
+        }
+    }
+
+    private void write(DataOutput output) throws IOException {
+        output.writeInt(MAGIC_NUMBER);
+        output.writeInt(VERSION);
+        output.writeInt(entries.size());
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            output.writeUTF(entry.getKey());
+            output.writeLong(entry.getValue().size);
+            output.writeLong(entry.getValue().lastUsed);
+        }
+    }
+
+    private static Map<String, Entry> read(Path indexFile) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            if (input.readInt() != MAGIC_NUMBER || input.readInt() != VERSION) {
+                throw new IOException("Unrecognized index format");
+            }
+            int numberOfEntries = input.readInt();
+            Map<String, Entry> entries = new HashMap<>(numberOfEntries * 2);
+            for (int i = 0; i < numberOfEntries; i++) {
+                String key = input.readUTF();
+                long size = input.readLong();
+                long lastUsed = input.readLong();
+                entries.put(key, new Entry(size, lastUsed));
+            }
+            return entries;
+        }
+    }
+
+    /**
+     * Finds the downloads in the cache (pointers, blobs, and anything left over from before downloads were kept by
+     * their hash), taking when they were downloaded as when they were last used. Everything else at the top level
+     * starts with a dot (e.g. this index), because Go pipeline names can't.
+     */
+    private static Map<String, Entry> scan(final Path baseDir) {
+        final Map<String, Entry> entries = new HashMap<>();
+        if (!Files.isDirectory(baseDir)) {
+            return entries;
+        }
+        try {
+            Files.walkFileTree(baseDir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attributes) {
+                    return isHidden(dir) ? SKIP_SUBTREE : CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    String fileName = file.getFileName().toString();
+                    if (!isHidden(file) && !fileName.endsWith(GoServer.DownloadCache.PARSED_REPORT_SUFFIX) && !fileName.endsWith(".tmp")) {
+                        entries.put(baseDir.relativize(file).toString(), new Entry(sizeOf(file), attributes.lastModifiedTime().toMillis()));
+                    }
+                    return CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return CONTINUE;
+                }
+
+                private boolean isHidden(Path path) {
+                    String name = path.getFileName().toString();
+                    return path.getParent() != null && path.getParent().equals(baseDir) && name.startsWith(".")
+                            && !name.equals(GoServer.DownloadCache.POINTERS_DIR_NAME) && !name.equals(GoServer.DownloadCache.BLOBS_DIR_NAME);
+                }
+            });
+        } catch (IOException e) {
+            System.out.println("Couldn't look through the download cache at '" + baseDir + "' (" + e + ")");
+        }
+        return entries;
+    }
+
+    private String getKey(Path download) {
+        return baseDir.relativize(download).toString();
+    }
+
+    private static long sizeOf(Path download) {
+        long size = 0;
+        for (Path file : Arrays.asList(download, download.resolveSibling(download.getFileName() + GoServer.DownloadCache.PARSED_REPORT_SUFFIX))) {
+            try {
+                size += Files.size(file);
+            } catch (IOException e) {
+                // Not there (yet)
+            }
+        }
+        return size;
+    }
+}
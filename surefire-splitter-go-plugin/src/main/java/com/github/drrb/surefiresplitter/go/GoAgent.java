@@ -18,14 +18,20 @@
 package com.github.drrb.surefiresplitter.go;
 
 import com.github.drrb.surefiresplitter.go.model.JobRun;
+import com.github.drrb.surefiresplitter.go.util.Bytes;
 
 import javax.net.ssl.SSLContext;
 import java.nio.file.Path;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static java.nio.file.Files.isDirectory;
 
 public class GoAgent {
+    private static final int DEFAULT_DOWNLOAD_PARALLELISM = 4;
+    private static final String DEFAULT_DOWNLOAD_CACHE_SIZE = "1 GB";
+    private static final int DEFAULT_DOWNLOAD_CACHE_DAYS = 30;
+
     private final Map<String, String> env;
     private final int numberOfRunsToLookBackForReports;
     private final Path baseDir;
@@ -40,6 +46,10 @@ public class GoAgent {
         return baseDir.resolve("pipelines");
     }
 
+    public Path getDownloadsDir() {
+        return getPipelinesDir().resolve(".go-downloads");
+    }
+
     public GoServer getGoServer() {
         return new GoServer(this);
     }
@@ -122,4 +132,35 @@ public class GoAgent {
     public int getNumberOfRunsToLookBackForReports() {
         return numberOfRunsToLookBackForReports;
     }
+
+    public int getDownloadParallelism() {
+        String downloadThreads = env.get("SUREFIRE_SPLITTER_DOWNLOAD_THREADS");
+        int parallelism = downloadThreads == null ? DEFAULT_DOWNLOAD_PARALLELISM : Integer.parseInt(downloadThreads.trim());
+        if (parallelism < 1) {
+            throw new IllegalStateException("Expected SUREFIRE_SPLITTER_DOWNLOAD_THREADS to be at least 1, but it was " + parallelism);
+        }
+        return parallelism;
+    }
+
+    public long getDownloadCacheSize() {
+        String cacheSize = env.get("SUREFIRE_SPLITTER_DOWNLOAD_CACHE_SIZE");
+        try {
+            return Bytes.of(cacheSize == null ? DEFAULT_DOWNLOAD_CACHE_SIZE : cacheSize);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Expected SUREFIRE_SPLITTER_DOWNLOAD_CACHE_SIZE to be a size like '1 GB', but it was '" + cacheSize + "'");
+        }
+    }
+
+    public long getDownloadCacheMaxAgeMillis() {
+        String cacheDays = env.get("SUREFIRE_SPLITTER_DOWNLOAD_CACHE_DAYS");
+        int days = cacheDays == null ? DEFAULT_DOWNLOAD_CACHE_DAYS : Integer.parseInt(cacheDays.trim());
+        if (days < 0) {
+            throw new IllegalStateException("Expected SUREFIRE_SPLITTER_DOWNLOAD_CACHE_DAYS to be at least 0, but it was " + days);
+        }
+        return TimeUnit.DAYS.toMillis(days);
+    }
+
+    public boolean isDownloadingZips() {
+        return Boolean.parseBoolean(env.get("SUREFIRE_SPLITTER_DOWNLOAD_ZIPS"));
+    }
 }
@@ -17,11 +17,11 @@
  */
 package com.github.drrb.surefiresplitter.go;
 
-import com.github.drrb.surefiresplitter.spi.AllocationConfigProvider;
+import com.github.drrb.surefiresplitter.spi.RunIdentifyingConfigProvider;
 
 import java.util.Map;
 
-public class GoAllocationConfigProvider implements AllocationConfigProvider {
+public class GoAllocationConfigProvider implements RunIdentifyingConfigProvider {
 
     private final Map<String, String> environmentVariables;
 
@@ -46,6 +46,22 @@ public class GoAllocationConfigProvider implements AllocationConfigProvider {
         return getEnvironmentVariableInt("GO_JOB_RUN_COUNT");
     }
 
+    /**
+     * The stage run, and the job without its run instance suffix (e.g. <code>test</code> for
+     * <code>test-runInstance-2</code>), which is the same for every split of the job.
+     */
+    public String getRunId() {
+        String pipelineName = environmentVariables.get("GO_PIPELINE_NAME");
+        String pipelineCounter = environmentVariables.get("GO_PIPELINE_COUNTER");
+        String stageName = environmentVariables.get("GO_STAGE_NAME");
+        String stageCounter = environmentVariables.get("GO_STAGE_COUNTER");
+        String jobName = environmentVariables.get("GO_JOB_NAME");
+        if (pipelineName == null || pipelineCounter == null || stageName == null || stageCounter == null || jobName == null) {
+            return null;
+        }
+        return String.format("%s/%s/%s/%s/%s", pipelineName, pipelineCounter, stageName, stageCounter, jobName.replaceFirst("-runInstance-\\d+$", ""));
+    }
+
     private Integer getEnvironmentVariableInt(String envVarName) {
         String envVar = environmentVariables.get(envVarName);
         return envVar == null ? null : Integer.parseInt(envVar);
@@ -21,6 +21,7 @@ import com.github.drrb.surefiresplitter.go.model.JobRun;
 import com.github.drrb.surefiresplitter.go.util.WorkingDir;
 import com.github.drrb.surefiresplitter.spi.JunitReport;
 import com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestSuite;
+import com.github.drrb.surefiresplitter.spi.FingerprintedReportRepo;
 import com.github.drrb.surefiresplitter.spi.ReportRepo;
 import com.github.drrb.surefiresplitter.spi.ReportRepoProvider;
 
@@ -29,7 +30,7 @@ import java.util.*;
 
 import static com.github.drrb.surefiresplitter.spi.FileFilters.SUREFIRE_REPORT_FILES;
 
-public class GoReportRepo implements ReportRepo {
+public class GoReportRepo implements FingerprintedReportRepo {
 
     private static final int DEFAULT_NUMBER_OF_RUNS_TO_LOOK_BACK_FOR_REPORTS = 5;
 
@@ -72,11 +73,13 @@ public class GoReportRepo implements ReportRepo {
 
     private final GoAgent goAgent;
     private final GoServer goServer;
+    private final HistoryStore historyStore;
     private final List<JunitTestSuite> cachedTestSuites = new LinkedList<>();
 
     private GoReportRepo(GoAgent goAgent) {
         this.goAgent = goAgent;
         this.goServer = goAgent.getGoServer();
+        this.historyStore = new HistoryStore(goAgent.getDownloadsDir());
     }
 
     @Override
@@ -91,16 +94,70 @@ public class GoReportRepo implements ReportRepo {
         return new ArrayList<>(cachedTestSuites);
     }
 
+    /**
+     * The history we download is determined by where we are in the pipeline's history, so we don't need to ask the
+     * server anything.
+     */
+    @Override
+    public String getFingerprint() {
+        return String.format("%s %s (looking back %d runs)", goAgent.getGoServerUrl(), goAgent.getCurrentJobRun(), goAgent.getNumberOfRunsToLookBackForReports());
+    }
+
+    /**
+     * Job runs that we've already read all of the reports from are loaded from the history store, so we only have to
+     * go to the server for the ones that are new (or still running).
+     *
+     * @return the reports from every stage run, most recent first, so a test class that ran in several of them is
+     * there once for each one (e.g. so that its duration can be estimated from all of them). Within a stage run, only
+     * the first report for each test class is kept (e.g. if it was split between the job's splits).
+     */
     private List<JunitTestSuite> downloadTestHistory() throws JunitReport.ReadFailure, GoServer.CommunicationError {
-        Set<JunitTestSuite> suites = new LinkedHashSet<>();
+        Map<JobRun, List<JunitTestSuite>> history = new LinkedHashMap<>();
+        List<JobRun> jobRunsToDownload = new LinkedList<>();
+        for (JobRun jobRun : goServer.getPreviousJobRuns(goAgent.getCurrentJobRun())) {
+            List<JunitTestSuite> storedTestSuites = historyStore.load(jobRun);
+            if (storedTestSuites == null) {
+                jobRunsToDownload.add(jobRun);
+            }
+            history.put(jobRun, storedTestSuites);
+        }
 
-        for (JobRun previousJobRun : goServer.getPreviousJobRuns(goAgent.getCurrentJobRun())) {
-            List<Path> jobFiles = goServer.downloadFiles(previousJobRun, SUREFIRE_REPORT_FILES);
+        goServer.useDownloads();
+        try {
+            for (Map.Entry<JobRun, List<JunitTestSuite>> downloaded : downloadTestHistory(jobRunsToDownload).entrySet()) {
+                history.put(downloaded.getKey(), downloaded.getValue());
+                historyStore.save(downloaded.getKey(), downloaded.getValue());
+            }
+            historyStore.keepOnly(history.keySet());
+        } finally {
+            goServer.tidyUpDownloads();
+        }
 
-            for (Path reportFile : jobFiles) {
-                suites.add(JunitReport.parse(reportFile));
+        Map<String, Set<JunitTestSuite>> suitesByStageRun = new LinkedHashMap<>();
+        for (Map.Entry<JobRun, List<JunitTestSuite>> jobRunSuites : history.entrySet()) {
+            JobRun jobRun = jobRunSuites.getKey();
+            String stageRun = String.format("%s/%s/%s/%s", jobRun.pipelineName, jobRun.pipelineCounter, jobRun.stageName, jobRun.stageCounter);
+            Set<JunitTestSuite> stageRunSuites = suitesByStageRun.get(stageRun);
+            if (stageRunSuites == null) {
+                stageRunSuites = new LinkedHashSet<>();
+                suitesByStageRun.put(stageRun, stageRunSuites);
             }
+            stageRunSuites.addAll(jobRunSuites.getValue());
+        }
+        List<JunitTestSuite> suites = new ArrayList<>();
+        for (Set<JunitTestSuite> stageRunSuites : suitesByStageRun.values()) {
+            suites.addAll(stageRunSuites);
+        }
+        return suites;
+    }
+
+    private Map<JobRun, List<JunitTestSuite>> downloadTestHistory(List<JobRun> jobRuns) throws JunitReport.ReadFailure, GoServer.CommunicationError {
+        if (jobRuns.isEmpty()) {
+            return Collections.emptyMap();
+        } else if (goAgent.isDownloadingZips()) {
+            return goServer.readReportsFromZips(jobRuns, SUREFIRE_REPORT_FILES);
+        } else {
+            return goServer.readReports(jobRuns, SUREFIRE_REPORT_FILES);
         }
-        return new ArrayList<>(suites);
     }
 }
@@ -20,20 +20,29 @@ package com.github.drrb.surefiresplitter.go;
 import com.github.drrb.surefiresplitter.go.GoServer.DownloadCache.Download;
 import com.github.drrb.surefiresplitter.go.model.*;
 import com.github.drrb.surefiresplitter.go.util.Bytes;
+import com.github.drrb.surefiresplitter.spi.CompactReport;
+import com.github.drrb.surefiresplitter.spi.JunitReport;
+import com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestSuite;
 import com.squareup.okhttp.*;
 
 import javax.net.ssl.HostnameVerifier;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSession;
-import java.io.FilenameFilter;
-import java.io.IOException;
+import java.io.*;
 import java.net.URI;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import static java.lang.Math.min;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
 
 public class GoServer {
@@ -48,20 +57,38 @@ public class GoServer {
         }
     }
 
+    private static final long MAX_REPORT_SIZE = Bytes.of("4 MB");
+    private static final long MAX_HTTP_CACHE_SIZE = Bytes.of("10 MB");
+
+    /**
+     * For things that can change (e.g. the stage history): use the cached response if the server says it hasn't changed.
+     */
+    private static final CacheControl REVALIDATE = new CacheControl.Builder().maxAge(0, TimeUnit.SECONDS).build();
+    /**
+     * For things that can't change (e.g. the files from a finished job run): use the cached response without asking.
+     */
+    private static final CacheControl CACHE_FOREVER = new CacheControl.Builder().maxStale(Integer.MAX_VALUE, TimeUnit.SECONDS).build();
+    /**
+     * For reports, which are cached by the {@link DownloadCache} instead.
+     */
+    private static final CacheControl DONT_CACHE = new CacheControl.Builder().noStore().build();
+
     private final String baseUrl;
     private final String username;
     private final String password;
     private final OkHttpClient httpClient;
     private final DownloadCache downloadCache;
     private final int numberOfRunsToLookBackForReports;
+    private final int downloadParallelism;
 
     public GoServer(GoAgent config) {
         this.baseUrl = config.getGoServerUrl();
         this.numberOfRunsToLookBackForReports = config.getNumberOfRunsToLookBackForReports();
-        this.downloadCache = DownloadCache.create(baseUrl, config.getPipelinesDir().resolve(".go-downloads"));
+        this.downloadParallelism = config.getDownloadParallelism();
+        this.downloadCache = DownloadCache.create(baseUrl, config.getDownloadsDir(), config.getDownloadCacheSize(), config.getDownloadCacheMaxAgeMillis());
         this.username = config.getServerUsername();
         this.password = config.getServerPassword();
-        this.httpClient = new GoServerTrustingHttpClient(config.getSslContext());
+        this.httpClient = new GoServerTrustingHttpClient(config.getSslContext(), downloadParallelism, config.getDownloadsDir().resolve(".http-cache"));
     }
 
     public List<JobRun> getPreviousJobRuns(JobRun mostRecentJobRun) throws CommunicationError {
@@ -69,17 +96,118 @@ public class GoServer {
         for (StageResult stageResult : getPreviousStageHistoryUntilMostRecentPassed(mostRecentJobRun)) {
             for (JobResult jobResult : stageResult.getJobs()) {
                 if (jobResult.isInstanceOf(mostRecentJobRun.jobName)) {
-                    previousJobRuns.add(new JobRun(stageResult.pipelineName, stageResult.pipelineCounter, stageResult.stageName, stageResult.stageCounter, jobResult.jobName));
+                    previousJobRuns.add(new JobRun(stageResult.pipelineName, stageResult.pipelineCounter, stageResult.stageName, stageResult.stageCounter, jobResult.jobName, stageResult.isCompleted()));
                 }
             }
         }
         return previousJobRuns;
     }
 
-    public List<Path> downloadFiles(JobRun jobRun, FilenameFilter filenameFilter) throws CommunicationError {
-        GoFiles files = listFiles(jobRun);
-        List<GoFile> filesToDownload = files.filter(filenameFilter);
-        return downloadAll(filesToDownload);
+    /**
+     * Downloads the files matching the filter from all of the job runs, returning them for each job run in order (the
+     * files from the first job run first, in the order they're listed by Go).
+     * <p>
+     * Up to <code>downloadParallelism</code> requests are made at a time: first to list the files from all of the job
+     * runs, then to download them.
+     */
+    public Map<JobRun, List<Path>> downloadFiles(List<JobRun> jobRuns, FilenameFilter filenameFilter) throws CommunicationError {
+        ExecutorService downloaders = Executors.newFixedThreadPool(downloadParallelism, new DownloaderThreadFactory());
+        try {
+            Map<JobRun, List<GoFile>> filesToDownload = new LinkedHashMap<>();
+            List<GoFiles> listings = listFiles(jobRuns, filenameFilter, downloaders);
+            for (int i = 0; i < jobRuns.size(); i++) {
+                filesToDownload.put(jobRuns.get(i), listings.get(i).filter(filenameFilter));
+            }
+            return downloadAll(filesToDownload, downloaders);
+        } finally {
+            shutDown(downloaders);
+        }
+    }
+
+    /**
+     * Downloads and reads the JUnit reports matching the filter from all of the job runs, in the same order as
+     * {@link #downloadFiles(List, FilenameFilter)} would download them. Reports that have been read before are read
+     * from the parsed copy kept in the download cache.
+     */
+    public Map<JobRun, List<JunitTestSuite>> readReports(List<JobRun> jobRuns, FilenameFilter filenameFilter) throws CommunicationError, JunitReport.ReadFailure {
+        ExecutorService downloaders = Executors.newFixedThreadPool(downloadParallelism, new DownloaderThreadFactory());
+        try {
+            Map<JobRun, List<Future<List<JunitTestSuite>>>> reads = new LinkedHashMap<>();
+            List<GoFiles> listings = listFiles(jobRuns, filenameFilter, downloaders);
+            for (int i = 0; i < jobRuns.size(); i++) {
+                List<Future<List<JunitTestSuite>>> jobRunReads = new ArrayList<>();
+                for (final GoFile file : listings.get(i).filter(filenameFilter)) {
+                    jobRunReads.add(downloaders.submit(new Callable<List<JunitTestSuite>>() {
+                        @Override
+                        public List<JunitTestSuite> call() throws CommunicationError, JunitReport.ReadFailure {
+                            return readReport(file.getUrl());
+                        }
+                    }));
+                }
+                reads.put(jobRuns.get(i), jobRunReads);
+            }
+            return waitForReports(reads);
+        } finally {
+            shutDown(downloaders);
+        }
+    }
+
+    /**
+     * Reads the JUnit reports matching the filter from all of the job runs, in the same order as
+     * {@link #downloadFiles(List, FilenameFilter)} would download them.
+     * <p>
+     * Instead of requesting reports one at a time, each top-level artifact folder that has reports in it is requested
+     * as a zip (which Go builds on the fly). Only the deepest folder that still has all of its reports in it is zipped
+     * (e.g. <code>target/surefire-reports</code> rather than all of <code>target</code>), so that other artifacts
+     * aren't downloaded with them. The reports are saved to the download cache as they're read out of the zip, and
+     * folders whose reports are all there already aren't requested again. Reports that aren't in a folder are
+     * downloaded individually as usual.
+     */
+    public Map<JobRun, List<JunitTestSuite>> readReportsFromZips(List<JobRun> jobRuns, final FilenameFilter filenameFilter) throws CommunicationError, JunitReport.ReadFailure {
+        ExecutorService downloaders = Executors.newFixedThreadPool(downloadParallelism, new DownloaderThreadFactory());
+        try {
+            Map<JobRun, List<Future<List<JunitTestSuite>>>> reads = new LinkedHashMap<>();
+            List<GoFiles> listings = listFiles(jobRuns, filenameFilter, downloaders);
+            for (int i = 0; i < jobRuns.size(); i++) {
+                List<Future<List<JunitTestSuite>>> jobRunReads = new ArrayList<>();
+                for (final GoFile file : listings.get(i)) {
+                    if (file.isFolder() && !file.getFiles().filter(filenameFilter).isEmpty()) {
+                        final GoFile folder = getDeepestFolderWithAllReports(file, filenameFilter);
+                        jobRunReads.add(downloaders.submit(new Callable<List<JunitTestSuite>>() {
+                            @Override
+                            public List<JunitTestSuite> call() throws CommunicationError, JunitReport.ReadFailure {
+                                return readReportsFromFolder(folder, filenameFilter);
+                            }
+                        }));
+                    } else if (!file.isFolder() && filenameFilter.accept(null, file.getName())) {
+                        jobRunReads.add(downloaders.submit(new Callable<List<JunitTestSuite>>() {
+                            @Override
+                            public List<JunitTestSuite> call() throws CommunicationError, JunitReport.ReadFailure {
+                                return readReport(file.getUrl());
+                            }
+                        }));
+                    }
+                }
+                reads.put(jobRuns.get(i), jobRunReads);
+            }
+            return waitForReports(reads);
+        } finally {
+            shutDown(downloaders);
+        }
+    }
+
+    /**
+     * Stops other processes evicting downloads from the download cache until {@link #tidyUpDownloads()} is called.
+     */
+    public void useDownloads() {
+        downloadCache.use();
+    }
+
+    /**
+     * Evicts old downloads from the download cache, if it's grown past its limits and nobody else is using it.
+     */
+    public void tidyUpDownloads() {
+        downloadCache.tidyUp();
     }
 
     private List<StageResult> getPreviousStageHistoryUntilMostRecentPassed(JobRun mostRecentJobRun) throws CommunicationError {
@@ -95,8 +223,8 @@ public class GoServer {
     }
 
     private List<StageResult> getPreviousStageRuns(JobRun jobRun) throws CommunicationError {
-        try (ResponseBody response = get(url("/api/stages/%s/%s/history", jobRun.pipelineName, jobRun.stageName))) {
-            List<StageResult> allStageRuns = StageHistory.fromJson(response.string()).getStages();
+        try (ResponseBody response = get(url("/api/stages/%s/%s/history", jobRun.pipelineName, jobRun.stageName), REVALIDATE)) {
+            List<StageResult> allStageRuns = StageHistory.fromJson(response.charStream()).getStages();
             List<StageResult> previousStageRuns = new LinkedList<>();
             for (StageResult stageRun : allStageRuns) {
                 if (stageRun.isBefore(jobRun.pipelineCounter, jobRun.stageCounter)) {
@@ -109,48 +237,264 @@ public class GoServer {
         }
     }
 
-    private GoFiles listFiles(JobRun jobRun) throws CommunicationError {
+    private List<GoFiles> listFiles(List<JobRun> jobRuns, final FilenameFilter filenameFilter, ExecutorService downloaders) throws CommunicationError {
+        List<Future<GoFiles>> listings = new ArrayList<>(jobRuns.size());
+        for (final JobRun jobRun : jobRuns) {
+            listings.add(downloaders.submit(new Callable<GoFiles>() {
+                @Override
+                public GoFiles call() throws CommunicationError {
+                    return listFiles(jobRun, filenameFilter);
+                }
+            }));
+        }
+        try {
+            List<GoFiles> result = new ArrayList<>(jobRuns.size());
+            for (Future<GoFiles> listing : listings) {
+                result.add(waitFor(listing));
+            }
+            return result;
+        } catch (Download.Skipped skipped) {
+            throw new IllegalStateException("File listings can't be skipped", skipped);
+        } finally {
+            cancelUnstarted(listings);
+        }
+    }
+
+    private GoFiles listFiles(JobRun jobRun, FilenameFilter filenameFilter) throws CommunicationError {
         String url = url("/files/%s/%s/%s/%s/%s.json", jobRun.pipelineName, jobRun.pipelineCounter, jobRun.stageName, jobRun.stageCounter, jobRun.jobName);
-        try (ResponseBody response = get(url)) {
-            return GoFiles.fromJson(response.string());
+        try (ResponseBody response = get(url, jobRun.completed ? CACHE_FOREVER : REVALIDATE)) {
+            return GoFiles.fromJson(response.charStream(), filenameFilter);
         } catch (IOException e) {
             throw new CommunicationError("Failed to list files for job " + jobRun);
         }
     }
 
-    private List<Path> downloadAll(List<GoFile> files) throws CommunicationError {
-        List<Path> downloadedFiles = new LinkedList<>();
-        for (GoFile file : files) {
-            String url = file.getUrl();
+    private Map<JobRun, List<Path>> downloadAll(Map<JobRun, List<GoFile>> files, ExecutorService downloaders) throws CommunicationError {
+        Map<JobRun, List<Future<Path>>> downloads = new LinkedHashMap<>();
+        List<Future<Path>> allDownloads = new ArrayList<>();
+        for (Map.Entry<JobRun, List<GoFile>> jobRunFiles : files.entrySet()) {
+            List<Future<Path>> jobRunDownloads = new ArrayList<>(jobRunFiles.getValue().size());
+            for (GoFile file : jobRunFiles.getValue()) {
+                final String url = file.getUrl();
+                jobRunDownloads.add(downloaders.submit(new Callable<Path>() {
+                    @Override
+                    public Path call() throws CommunicationError, Download.Skipped {
+                        return download(url);
+                    }
+                }));
+            }
+            downloads.put(jobRunFiles.getKey(), jobRunDownloads);
+            allDownloads.addAll(jobRunDownloads);
+        }
+        try {
+            Map<JobRun, List<Path>> downloadedFiles = new LinkedHashMap<>();
+            for (Map.Entry<JobRun, List<GoFile>> jobRunFiles : files.entrySet()) {
+                List<Future<Path>> jobRunDownloads = downloads.get(jobRunFiles.getKey());
+                List<Path> jobRunDownloadedFiles = new LinkedList<>();
+                for (int i = 0; i < jobRunDownloads.size(); i++) {
+                    try {
+                        jobRunDownloadedFiles.add(waitFor(jobRunDownloads.get(i)));
+                    } catch (Download.Skipped skipped) {
+                        System.out.println("Download skipped: '" + jobRunFiles.getValue().get(i).getUrl() + "' (" + skipped.getMessage() + ")");
+                    }
+                }
+                downloadedFiles.put(jobRunFiles.getKey(), jobRunDownloadedFiles);
+            }
+            return downloadedFiles;
+        } finally {
+            cancelUnstarted(allDownloads);
+        }
+    }
+
+    /**
+     * Walks down from a folder while all of its reports are in just one of its subfolders.
+     */
+    private static GoFile getDeepestFolderWithAllReports(GoFile folder, FilenameFilter filenameFilter) {
+        while (true) {
+            GoFile subfolderWithReports = null;
+            for (GoFile file : folder.getFiles()) {
+                if (!file.isFolder()) {
+                    if (filenameFilter.accept(null, file.getName())) {
+                        return folder;
+                    }
+                } else if (!file.getFiles().filter(filenameFilter).isEmpty()) {
+                    if (subfolderWithReports != null) {
+                        return folder;
+                    }
+                    subfolderWithReports = file;
+                }
+            }
+            if (subfolderWithReports == null) {
+                return folder;
+            }
+            folder = subfolderWithReports;
+        }
+    }
+
+    private List<JunitTestSuite> readReportsFromFolder(GoFile folder, FilenameFilter filenameFilter) throws CommunicationError, JunitReport.ReadFailure {
+        List<JunitTestSuite> reports = new LinkedList<>();
+        for (GoFile report : folder.getFiles().filter(filenameFilter)) {
+            JunitTestSuite testSuite = downloadCache.readReportIfDownloaded(report.getUrl());
+            if (testSuite == null) {
+                return readReportsFromZip(folder, filenameFilter);
+            }
+            reports.add(testSuite);
+        }
+        return reports;
+    }
+
+    private List<JunitTestSuite> readReportsFromZip(GoFile folder, FilenameFilter filenameFilter) throws CommunicationError, JunitReport.ReadFailure {
+        final String url = folder.getUrl() + ".zip";
+        List<JunitTestSuite> reports = new LinkedList<>();
+        try (ResponseBody response = get(url, DONT_CACHE); final ZipInputStream zip = new ZipInputStream(response.byteStream())) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                String fileName = entry.getName().substring(entry.getName().lastIndexOf('/') + 1);
+                if (entry.isDirectory() || !filenameFilter.accept(null, fileName)) {
+                    continue;
+                }
+                // Go puts the files under the name of the zipped folder
+                String reportUrl = folder.getUrl() + "/" + entry.getName().substring(entry.getName().indexOf('/') + 1);
+                try {
+                    Path downloadedReport = downloadCache.getOrDownload(reportUrl, new Download() {
+                        @Override
+                        public void download(String entryUrl, Path downloadTarget) throws CommunicationError, Skipped {
+                            try {
+                                DownloadCache.copy(zip, downloadTarget, MAX_REPORT_SIZE);
+                            } catch (IOException e) {
+                                throw new CommunicationError("Failed to download zip file from Go: (" + url + ")", e);
+                            }
+                        }
+                    });
+                    reports.add(downloadCache.readReport(downloadedReport));
+                } catch (Download.Skipped skipped) {
+                    System.out.println("Report skipped: '" + url + "!/" + entry.getName() + "' (" + skipped.getMessage() + ")");
+                }
+            }
+        } catch (IOException e) {
+            throw new CommunicationError("Failed to download zip file from Go: (" + url + ")", e);
+        }
+        return reports;
+    }
+
+    private List<JunitTestSuite> readReport(String url) throws CommunicationError, JunitReport.ReadFailure {
+        try {
+            return Collections.singletonList(downloadCache.readReport(url, downloadFromGo()));
+        } catch (Download.Skipped skipped) {
+            System.out.println("Download skipped: '" + url + "' (" + skipped.getMessage() + ")");
+            return Collections.emptyList();
+        }
+    }
+
+    private static Map<JobRun, List<JunitTestSuite>> waitForReports(Map<JobRun, List<Future<List<JunitTestSuite>>>> reads) throws CommunicationError, JunitReport.ReadFailure {
+        List<Future<List<JunitTestSuite>>> allReads = new ArrayList<>();
+        for (List<Future<List<JunitTestSuite>>> jobRunReads : reads.values()) {
+            allReads.addAll(jobRunReads);
+        }
+        try {
+            Map<JobRun, List<JunitTestSuite>> reports = new LinkedHashMap<>();
+            for (Map.Entry<JobRun, List<Future<List<JunitTestSuite>>>> jobRunReads : reads.entrySet()) {
+                List<JunitTestSuite> jobRunReports = new LinkedList<>();
+                for (Future<List<JunitTestSuite>> read : jobRunReads.getValue()) {
+                    jobRunReports.addAll(waitForReports(read));
+                }
+                reports.put(jobRunReads.getKey(), jobRunReports);
+            }
+            return reports;
+        } finally {
+            cancelUnstarted(allReads);
+        }
+    }
+
+    private static List<JunitTestSuite> waitForReports(Future<List<JunitTestSuite>> read) throws CommunicationError, JunitReport.ReadFailure {
+        try {
+            return read.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CommunicationError("Interrupted while waiting for the Go server", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof JunitReport.ReadFailure) {
+                throw (JunitReport.ReadFailure) e.getCause();
+            }
             try {
-                downloadedFiles.add(download(url));
+                throw rethrow(e.getCause());
             } catch (Download.Skipped skipped) {
-                System.out.println("Download skipped: '" + url + "' (" + skipped.getMessage() + ")");
+                throw new IllegalStateException("Skipped downloads should have been handled when reading", skipped);
             }
         }
-        return downloadedFiles;
+    }
+
+    /**
+     * Stops requests that haven't been made yet if one fails. Requests in progress aren't interrupted: OkHttp gives up
+     * on interrupted requests without closing their connections.
+     */
+    private static void cancelUnstarted(List<? extends Future<?>> tasks) {
+        for (Future<?> task : tasks) {
+            task.cancel(false);
+        }
+    }
+
+    /**
+     * Waits for requests that are already in progress to finish (e.g. if another one failed), so that we don't leave
+     * anything running in the background. They can't take forever: OkHttp times them out.
+     */
+    private static void shutDown(ExecutorService downloaders) {
+        downloaders.shutdown();
+        try {
+            downloaders.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static <T> T waitFor(Future<T> task) throws CommunicationError, Download.Skipped {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CommunicationError("Interrupted while waiting for the Go server", e);
+        } catch (ExecutionException e) {
+            throw rethrow(e.getCause());
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable failure) throws CommunicationError, Download.Skipped {
+        if (failure instanceof CommunicationError) {
+            throw (CommunicationError) failure;
+        } else if (failure instanceof Download.Skipped) {
+            throw (Download.Skipped) failure;
+        } else if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else {
+            throw new RuntimeException(failure);
+        }
     }
 
     private Path download(String url) throws CommunicationError, Download.Skipped {
-        return downloadCache.getOrDownload(url, new Download() {
+        return downloadCache.getOrDownload(url, downloadFromGo());
+    }
+
+    private Download downloadFromGo() {
+        return new Download() {
 
             @Override
             public void download(String url, Path downloadTarget) throws CommunicationError, Skipped {
-                try (ResponseBody response = get(url)) {
+                try (ResponseBody response = get(url, DONT_CACHE)) {
                     Files.createDirectories(downloadTarget.getParent());
-                    if (response.contentLength() > Bytes.of("4 MB")) {
+                    if (response.contentLength() > MAX_REPORT_SIZE) {
                         throw new Skipped("File too large. Probably not actually a surefire report (" + Bytes.render(response.contentLength()) + ")");
                     }
-                    Files.copy(response.byteStream(), downloadTarget, REPLACE_EXISTING);
+                    DownloadCache.copy(response.byteStream(), downloadTarget, MAX_REPORT_SIZE);
                 } catch (IOException e) {
                     throw new CommunicationError("Failed to download file from Go: (" + url + " -> " + downloadTarget + ")", e);
                 }
             }
-        });
+        };
     }
 
-    private ResponseBody get(String url) throws CommunicationError {
-        Request.Builder requestBuilder = new Request.Builder().get().url(url);
+    private ResponseBody get(String url, CacheControl cacheControl) throws CommunicationError {
+        Request.Builder requestBuilder = new Request.Builder().get().url(url).cacheControl(cacheControl);
         if (username != null && password != null) {
             requestBuilder.addHeader("Authorization", Credentials.basic(username, password));
         }
@@ -172,19 +516,34 @@ public class GoServer {
         System.out.println(" -> " + request.url());
         try {
             Response response = httpClient.newCall(request).execute();
-            System.out.println(" <- " + response.code() + ": " + response.message() + " (" + Bytes.render(response.body().contentLength()) + ")");
+            System.out.println(" <- " + response.code() + ": " + response.message() + " (" + Bytes.render(response.body().contentLength()) + describeCacheUse(response) + ")");
             return response;
         } catch (IOException e) {
             throw new CommunicationError("Connection to Go server failed", e);
         }
     }
 
+    private static String describeCacheUse(Response response) {
+        if (response.networkResponse() == null) {
+            return ", from cache";
+        } else if (response.cacheResponse() != null) {
+            return ", not modified";
+        } else {
+            return "";
+        }
+    }
+
     private String url(String format, Object... args) {
         return baseUrl.replaceFirst("/$", "") + String.format(format, args);
     }
 
     static class DownloadCache {
 
+        static final String PARSED_REPORT_SUFFIX = ".parsed";
+        static final String POINTERS_DIR_NAME = ".urls";
+        static final String BLOBS_DIR_NAME = ".blobs";
+        private static final int PARSED_REPORT_MAGIC_NUMBER = 0x53535052;
+
         public interface Download {
             class Skipped extends Exception {
                 public Skipped(String message) {
@@ -195,7 +554,7 @@ public class GoServer {
             void download(String url, Path downloadTarget) throws Skipped, CommunicationError;
         }
 
-        public static DownloadCache create(String baseUrl, Path baseDir) {
+        public static DownloadCache create(String baseUrl, Path baseDir, long maxBytes, long maxAgeMillis) {
             if (!Files.isDirectory(baseDir)) {
                 try {
                     Files.createDirectories(baseDir);
@@ -203,23 +562,273 @@ public class GoServer {
                     throw new RuntimeException("Couldn't create download directory for reports from Go at " + baseDir.toAbsolutePath(), e);
                 }
             }
-            return new DownloadCache(baseUrl, baseDir);
+            return new DownloadCache(baseUrl, baseDir, DownloadIndex.load(baseDir), DownloadCacheLock.in(baseDir), maxBytes, maxAgeMillis);
         }
 
         private final String baseUrl;
-        private final Path baseDir;
+        private final Path pointersDir;
+        private final Path blobsDir;
+        private final DownloadIndex index;
+        private final DownloadCacheLock lock;
+        private final long maxBytes;
+        private final long maxAgeMillis;
+        private final ConcurrentMap<Path, FutureTask<Path>> downloadsInProgress = new ConcurrentHashMap<>();
+        private boolean inUse;
 
-        public DownloadCache(String baseUrl, Path baseDir) {
+        public DownloadCache(String baseUrl, Path baseDir, DownloadIndex index, DownloadCacheLock lock, long maxBytes, long maxAgeMillis) {
             this.baseUrl = baseUrl;
-            this.baseDir = baseDir;
+            this.pointersDir = baseDir.resolve(POINTERS_DIR_NAME);
+            this.blobsDir = baseDir.resolve(BLOBS_DIR_NAME);
+            this.index = index;
+            this.lock = lock;
+            this.maxBytes = maxBytes;
+            this.maxAgeMillis = maxAgeMillis;
+        }
+
+        /**
+         * Downloads the file unless it's already been downloaded, returning where its contents are kept. Contents are
+         * kept by their hash, with a pointer to them for each URL, so that a report that's the same in lots of runs
+         * (e.g. because nobody touched the test) is only kept, and parsed, once. If another thread is already
+         * downloading the same file (e.g. the same report from another split of the same job), waits for it to finish
+         * instead.
+         */
+        public Path getOrDownload(final String url, final Download download) throws CommunicationError, Download.Skipped {
+            final Path pointer = getCachePath(url);
+            Path blob = followPointer(pointer);
+            if (blob == null) {
+                FutureTask<Path> newDownload = new FutureTask<>(new Callable<Path>() {
+                    @Override
+                    public Path call() throws CommunicationError, Download.Skipped {
+                        Path blob = followPointer(pointer);
+                        return blob == null ? downloadBlob(url, pointer, download) : blob;
+                    }
+                });
+                FutureTask<Path> downloadInProgress = downloadsInProgress.putIfAbsent(pointer, newDownload);
+                if (downloadInProgress == null) {
+                    downloadInProgress = newDownload;
+                    try {
+                        newDownload.run();
+                    } finally {
+                        downloadsInProgress.remove(pointer, newDownload);
+                    }
+                }
+                blob = waitFor(downloadInProgress);
+            }
+            index.used(pointer);
+            index.used(blob);
+            return blob;
+        }
+
+        /**
+         * Stops anyone else tidying up the cache until {@link #tidyUp()} is called, so that nothing we download or
+         * look up is evicted before we've read it. Waits if it's being tidied up right now.
+         */
+        public void use() {
+            try {
+                lock.use();
+                inUse = true;
+            } catch (IOException e) {
+                System.out.println("Couldn't lock the download cache: carrying on without it (" + e + ")");
+            }
+        }
+
+        /**
+         * Downloads and reads a report unless it's already been downloaded. If it's evicted before we get to read it
+         * (e.g. by something that doesn't lock the cache), it's downloaded again.
+         */
+        public JunitTestSuite readReport(String url, Download download) throws CommunicationError, Download.Skipped, JunitReport.ReadFailure {
+            Path downloadedFile = getOrDownload(url, download);
+            try {
+                return readReport(downloadedFile);
+            } catch (JunitReport.ReadFailure e) {
+                if (Files.exists(downloadedFile)) {
+                    throw e;
+                }
+                return readReport(getOrDownload(url, download));
+            }
+        }
+
+        /**
+         * Reads a report if it's already been downloaded, or returns null if it hasn't (or it's evicted before we get
+         * to read it).
+         */
+        public JunitTestSuite readReportIfDownloaded(String url) throws JunitReport.ReadFailure {
+            Path downloadedFile = getIfDownloaded(url);
+            if (downloadedFile == null) {
+                return null;
+            }
+            try {
+                return readReport(downloadedFile);
+            } catch (JunitReport.ReadFailure e) {
+                if (Files.exists(downloadedFile)) {
+                    throw e;
+                }
+                return null;
+            }
+        }
+
+        /**
+         * Returns where the file's contents are kept if it's already been downloaded, or null if it hasn't.
+         */
+        public Path getIfDownloaded(String url) {
+            Path pointer = getCachePath(url);
+            Path blob = followPointer(pointer);
+            if (blob != null) {
+                index.used(pointer);
+                index.used(blob);
+            }
+            return blob;
         }
 
-        public Path getOrDownload(String url, Download download) throws CommunicationError, Download.Skipped {
-            Path downloadTarget = getCachePath(url);
-            if (!Files.exists(downloadTarget)) {
-                download.download(url, downloadTarget);
+        /**
+         * Copies a download to where it's going, giving up if it turns out to be bigger than a report could be (we
+         * can't always tell beforehand, e.g. for files in a zip, or responses without a content length).
+         */
+        static void copy(InputStream input, Path downloadTarget, long maxBytes) throws IOException, Download.Skipped {
+            try (OutputStream output = Files.newOutputStream(downloadTarget)) {
+                byte[] buffer = new byte[8192];
+                long totalBytes = 0;
+                for (int bytesRead = input.read(buffer); bytesRead != -1; bytesRead = input.read(buffer)) {
+                    totalBytes += bytesRead;
+                    if (totalBytes > maxBytes) {
+                        throw new Download.Skipped("File too large. Probably not actually a surefire report (more than " + Bytes.render(maxBytes) + ")");
+                    }
+                    output.write(buffer, 0, bytesRead);
+                }
+            }
+        }
+
+        private Path downloadBlob(String url, Path pointer, Download download) throws CommunicationError, Download.Skipped {
+            try {
+                Files.createDirectories(blobsDir);
+                Path tempFile = Files.createTempFile(blobsDir, "download", ".tmp");
+                try {
+                    download.download(url, tempFile);
+                    Path blob = getBlobPath(hash(tempFile));
+                    if (!Files.exists(blob)) {
+                        Files.createDirectories(blob.getParent());
+                        Files.move(tempFile, blob, ATOMIC_MOVE, REPLACE_EXISTING);
+                    }
+                    writePointer(pointer, blob);
+                    return blob;
+                } finally {
+                    Files.deleteIfExists(tempFile);
+                }
+            } catch (IOException e) {
+                throw new CommunicationError("Failed to download file from Go: (" + url + " -> " + pointer + ")", e);
+            }
+        }
+
+        /**
+         * Returns the contents that the pointer points to, or null if there's no pointer (or its contents have been
+         * evicted).
+         */
+        private Path followPointer(Path pointer) {
+            if (!Files.isRegularFile(pointer)) {
+                return null;
+            }
+            try {
+                String hash = new String(Files.readAllBytes(pointer), UTF_8).trim();
+                if (!hash.matches("[0-9a-f]{40}")) {
+                    return null;
+                }
+                Path blob = getBlobPath(hash);
+                return Files.isRegularFile(blob) ? blob : null;
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        private static void writePointer(Path pointer, Path blob) throws IOException {
+            Files.createDirectories(pointer.getParent());
+            Path tempFile = Files.createTempFile(pointer.getParent(), pointer.getFileName().toString(), ".tmp");
+            try {
+                Files.write(tempFile, blob.getFileName().toString().getBytes(UTF_8));
+                Files.move(tempFile, pointer, ATOMIC_MOVE, REPLACE_EXISTING);
+            } finally {
+                Files.deleteIfExists(tempFile);
+            }
+        }
+
+        private static String hash(Path file) throws IOException {
+            MessageDigest digest;
+            try {
+                digest = MessageDigest.getInstance("SHA-1");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-1 should always be available", e);
+            }
+            try (InputStream input = Files.newInputStream(file)) {
+                byte[] buffer = new byte[8192];
+                for (int bytesRead = input.read(buffer); bytesRead != -1; bytesRead = input.read(buffer)) {
+                    digest.update(buffer, 0, bytesRead);
+                }
+            }
+            StringBuilder hash = new StringBuilder();
+            for (byte b : digest.digest()) {
+                hash.append(String.format("%02x", b));
+            }
+            return hash.toString();
+        }
+
+        private Path getBlobPath(String hash) {
+            return blobsDir.resolve(hash.substring(0, 2)).resolve(hash);
+        }
+
+        /**
+         * Evicts downloads to keep the cache within its size and age limits, unless someone else is using it (in which
+         * case it's left to them). Call this once the downloads have been read.
+         */
+        public void tidyUp() {
+            index.save();
+            if (inUse) {
+                inUse = false;
+                lock.release();
+            }
+            lock.tidyUp(new Runnable() {
+                @Override
+                public void run() {
+                    index.tidyUp(maxBytes, maxAgeMillis);
+                }
+            });
+        }
+
+        /**
+         * Parses a downloaded report, keeping a compact copy of the parsed report next to it so that it doesn't have to
+         * be parsed again. Downloaded contents are kept by their hash, so the copy is always up to date if it's there.
+         */
+        public JunitTestSuite readReport(Path downloadedFile) throws JunitReport.ReadFailure {
+            Path parsedFile = downloadedFile.resolveSibling(downloadedFile.getFileName() + PARSED_REPORT_SUFFIX);
+            if (Files.isRegularFile(parsedFile)) {
+                try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(parsedFile)))) {
+                    if (input.readInt() != PARSED_REPORT_MAGIC_NUMBER || input.readInt() != CompactReport.FORMAT_VERSION) {
+                        throw new IOException("Unrecognized parsed report format");
+                    }
+                    return CompactReport.read(input);
+                } catch (IOException e) {
+                    System.out.println("Couldn't read parsed report '" + parsedFile + "': parsing the report again (" + e + ")");
+                }
+            }
+            JunitTestSuite testSuite = JunitReport.parse(downloadedFile);
+            saveParsedReport(testSuite, parsedFile);
+            index.resized(downloadedFile);
+            return testSuite;
+        }
+
+        private static void saveParsedReport(JunitTestSuite testSuite, Path parsedFile) {
+            try {
+                Path tempFile = Files.createTempFile(parsedFile.getParent(), parsedFile.getFileName().toString(), ".tmp");
+                try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                    output.writeInt(PARSED_REPORT_MAGIC_NUMBER);
+                    output.writeInt(CompactReport.FORMAT_VERSION);
+                    CompactReport.write(testSuite, output);
+                } catch (IOException e) {
+                    Files.deleteIfExists(tempFile);
+                    throw e;
+                }
+                Files.move(tempFile, parsedFile, ATOMIC_MOVE, REPLACE_EXISTING);
+            } catch (IOException e) {
+                System.out.println("Couldn't save parsed report '" + parsedFile + "': it will be parsed again next time (" + e + ")");
             }
-            return downloadTarget;
         }
 
         private Path getCachePath(String downloadUrl) {
@@ -227,12 +836,18 @@ public class GoServer {
             URI filesBaseUrl = URI.create(baseUrl + "files");
             String filePath = filesBaseUrl.relativize(url).getPath();
             String canonicalFilePath = filePath.replaceFirst("-runInstance-\\d+/", "/");
-            return baseDir.resolve(canonicalFilePath);
+            return pointersDir.resolve(canonicalFilePath);
         }
     }
 
     private static class GoServerTrustingHttpClient extends OkHttpClient {
-        public GoServerTrustingHttpClient(SSLContext agentSslContext) {
+        private static final long KEEP_ALIVE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+        public GoServerTrustingHttpClient(SSLContext agentSslContext, int maxIdleConnections, Path cacheDir) {
+            // Cache JSON responses, so that we can make conditional requests for them (see the CacheControls above)
+            setCache(new Cache(cacheDir.toFile(), MAX_HTTP_CACHE_SIZE));
+            // Keep a connection open for each download thread, so they don't have to keep reconnecting
+            setConnectionPool(new ConnectionPool(maxIdleConnections, KEEP_ALIVE_MILLIS));
             setFollowRedirects(false); // Otherwise we get a 200 if we're forwarded to the login page if the auth is bad
             setSslSocketFactory(agentSslContext.getSocketFactory()); // Trust the server's cert using the agent's trust store
             // Don't check the server's hostname: the GO_SERVER_URL env variable on the agent isn't necessarily the CN
@@ -245,4 +860,15 @@ public class GoServer {
             });
         }
     }
+
+    private static class DownloaderThreadFactory implements ThreadFactory {
+        private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(Runnable task) {
+            Thread thread = new Thread(task, "surefire-splitter-go-downloader-" + threadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
@@ -0,0 +1,177 @@
+/**
+ * Surefire Splitter Go Plugin
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter Go Plugin. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.go;
+
+import com.github.drrb.surefiresplitter.go.model.JobRun;
+import com.github.drrb.surefiresplitter.spi.CompactReport;
+import com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestSuite;
+
+import java.io.*;
+import java.nio.file.DirectoryNotEmptyException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * The parsed reports from previous job runs, kept on the agent so that we don't have to list, download, or parse the
+ * reports from a job run again once we've read them all.
+ * <p>
+ * Only job runs from stages that have finished are stored: their artifacts won't change any more. Each job run is
+ * stored in its own binary file, under a directory that can't clash with a pipeline's name (Go pipeline names can't
+ * start with a dot). It isn't part of the download cache's budget, so it's kept to the job runs that are read instead
+ * (see {@link #keepOnly(Collection)}).
+ */
+class HistoryStore {
+
+    private static final String DIR_NAME = ".history";
+    private static final int MAGIC_NUMBER = 0x53534748;
+    private static final int VERSION = 1;
+
+    private final Path baseDir;
+
+    HistoryStore(Path downloadsDir) {
+        this.baseDir = downloadsDir.resolve(DIR_NAME);
+    }
+
+    /**
+     * Returns the reports stored for the job run, or null if they haven't been stored (or couldn't be read).
+     */
+    List<JunitTestSuite> load(JobRun jobRun) {
+        Path historyFile = getPath(jobRun);
+        if (!jobRun.completed || !Files.isRegularFile(historyFile)) {
+            return null;
+        }
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(historyFile)))) {
+            return read(input);
+        } catch (IOException e) {
+            System.out.println("Couldn't read stored history '" + historyFile + "': downloading it again (" + e + ")");
+            return null;
+        }
+    }
+
+    void save(JobRun jobRun, List<JunitTestSuite> testSuites) {
+        if (!jobRun.completed) {
+            return;
+        }
+        Path historyFile = getPath(jobRun);
+        try {
+            Files.createDirectories(historyFile.getParent());
+            Path tempFile = Files.createTempFile(historyFile.getParent(), historyFile.getFileName().toString(), ".tmp");
+            try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                write(testSuites, output);
+            } catch (IOException e) {
+                Files.deleteIfExists(tempFile);
+                throw e;
+            }
+            Files.move(tempFile, historyFile, ATOMIC_MOVE, REPLACE_EXISTING);
+        } catch (IOException e) {
+            System.out.println("Couldn't store history '" + historyFile + "': it will be downloaded again next time (" + e + ")");
+        }
+    }
+
+    /**
+     * Deletes the stored job runs of the same jobs (in the same pipelines and stages) as these ones, apart from these
+     * ones. Everything older has dropped out of the history we look back over, so it won't be read again.
+     */
+    void keepOnly(Collection<JobRun> jobRuns) {
+        Set<Path> keep = new HashSet<>();
+        Map<List<String>, Set<String>> jobNamesByStage = new HashMap<>();
+        for (JobRun jobRun : jobRuns) {
+            keep.add(getPath(jobRun));
+            List<String> stage = Arrays.asList(jobRun.pipelineName, jobRun.stageName);
+            Set<String> jobNames = jobNamesByStage.get(stage);
+            if (jobNames == null) {
+                jobNames = new HashSet<>();
+                jobNamesByStage.put(stage, jobNames);
+            }
+            jobNames.add(jobRun.jobName);
+        }
+        for (Map.Entry<List<String>, Set<String>> stageJobNames : jobNamesByStage.entrySet()) {
+            Path pipelineDir = baseDir.resolve(stageJobNames.getKey().get(0));
+            String stageName = stageJobNames.getKey().get(1);
+            for (Path pipelineRunDir : list(pipelineDir)) {
+                for (Path stageRunDir : list(pipelineRunDir.resolve(stageName))) {
+                    for (String jobName : stageJobNames.getValue()) {
+                        Path historyFile = stageRunDir.resolve(jobName);
+                        if (!keep.contains(historyFile) && Files.isRegularFile(historyFile)) {
+                            delete(historyFile);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private List<Path> list(Path dir) {
+        List<Path> children = new ArrayList<>();
+        if (!Files.isDirectory(dir)) {
+            return children;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(dir)) {
+            for (Path child : stream) {
+                children.add(child);
+            }
+        } catch (IOException e) {
+            System.out.println("Couldn't look through stored history '" + dir + "' (" + e + ")");
+        }
+        return children;
+    }
+
+    private void delete(Path historyFile) {
+        try {
+            Files.deleteIfExists(historyFile);
+            for (Path dir = historyFile.getParent(); !dir.equals(baseDir); dir = dir.getParent()) {
+                Files.delete(dir);
+            }
+        } catch (DirectoryNotEmptyException e) {
+            // Other job runs still in there
+        } catch (IOException e) {
+            System.out.println("Couldn't delete stored history '" + historyFile + "' (" + e + ")");
+        }
+    }
+
+    private static List<JunitTestSuite> read(DataInput input) throws IOException {
+        if (input.readInt() != MAGIC_NUMBER || input.readInt() != VERSION || input.readInt() != CompactReport.FORMAT_VERSION) {
+            throw new IOException("Unrecognized history format");
+        }
+        int numberOfTestSuites = input.readInt();
+        List<JunitTestSuite> testSuites = new ArrayList<>(numberOfTestSuites);
+        for (int i = 0; i < numberOfTestSuites; i++) {
+            testSuites.add(CompactReport.read(input));
+        }
+        return testSuites;
+    }
+
+    private static void write(List<JunitTestSuite> testSuites, DataOutput output) throws IOException {
+        output.writeInt(MAGIC_NUMBER);
+        output.writeInt(VERSION);
+        output.writeInt(CompactReport.FORMAT_VERSION);
+        output.writeInt(testSuites.size());
+        for (JunitTestSuite testSuite : testSuites) {
+            CompactReport.write(testSuite, output);
+        }
+    }
+
+    private Path getPath(JobRun jobRun) {
+        return baseDir.resolve(jobRun.pipelineName).resolve(jobRun.pipelineCounter).resolve(jobRun.stageName).resolve(jobRun.stageCounter).resolve(jobRun.jobName);
+    }
+}
@@ -18,11 +18,17 @@
 package com.github.drrb.surefiresplitter.go.model;
 
 import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
 
 import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.Reader;
 import java.util.LinkedList;
 import java.util.List;
 
+import static com.github.drrb.surefiresplitter.go.model.GoFile.FileType.file;
+import static com.github.drrb.surefiresplitter.go.model.GoFile.FileType.folder;
+
 public class GoFiles extends LinkedList<GoFile> {
     public List<GoFile> filter(FilenameFilter filter) {
         List<GoFile> result = new LinkedList<>();
@@ -40,7 +46,55 @@ public class GoFiles extends LinkedList<GoFile> {
         return new Gson().toJson(this);
     }
 
-    public static GoFiles fromJson(String json) {
-        return new Gson().fromJson(json, GoFiles.class);
+    /**
+     * Reads a listing of files as it streams in, only keeping the files that the filter accepts and the folders that
+     * have them in. Everything else is skipped over as it's read, so that big artifact trees don't have to be held in
+     * memory.
+     */
+    public static GoFiles fromJson(Reader json, FilenameFilter filter) throws IOException {
+        return readFiles(new JsonReader(json), filter);
+    }
+
+    private static GoFiles readFiles(JsonReader reader, FilenameFilter filter) throws IOException {
+        GoFiles files = new GoFiles();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            GoFile file = readFile(reader, filter);
+            if (file.isFolder() ? !file.getFiles().isEmpty() : file.getName() != null && filter.accept(null, file.getName())) {
+                files.add(file);
+            }
+        }
+        reader.endArray();
+        return files;
+    }
+
+    private static GoFile readFile(JsonReader reader, FilenameFilter filter) throws IOException {
+        String name = null;
+        String url = null;
+        GoFile.FileType type = file;
+        GoFiles files = new GoFiles();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "name":
+                    name = reader.nextString();
+                    break;
+                case "url":
+                    url = reader.nextString();
+                    break;
+                case "type":
+                    type = folder.name().equals(reader.nextString()) ? folder : file;
+                    break;
+                case "files":
+                    files = readFiles(reader, filter);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        GoFile goFile = new GoFile(type, name, url);
+        goFile.getFiles().addAll(files);
+        return goFile;
     }
 }
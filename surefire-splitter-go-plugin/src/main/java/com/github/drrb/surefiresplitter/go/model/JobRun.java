@@ -23,13 +23,19 @@ public class JobRun {
     public final String stageName;
     public final String stageCounter;
     public final String jobName;
+    public final boolean completed;
 
     public JobRun(String pipelineName, String pipelineCounter, String stageName, String stageCounter, String jobName) {
+        this(pipelineName, pipelineCounter, stageName, stageCounter, jobName, false);
+    }
+
+    public JobRun(String pipelineName, String pipelineCounter, String stageName, String stageCounter, String jobName, boolean completed) {
         this.pipelineName = pipelineName;
         this.pipelineCounter = pipelineCounter;
         this.stageName = stageName;
         this.stageCounter = stageCounter;
         this.jobName = jobName;
+        this.completed = completed;
     }
 
     @Override
@@ -18,15 +18,50 @@
 package com.github.drrb.surefiresplitter.go.model;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 public class StageHistory {
 
+    private static final Gson GSON = new Gson();
+
     public static StageHistory fromJson(String json) {
-        return new Gson().fromJson(json, StageHistory.class);
+        try {
+            return fromJson(new StringReader(json));
+        } catch (IOException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    /**
+     * Reads the stage history as it streams in, one stage at a time, skipping everything but the stages.
+     */
+    public static StageHistory fromJson(Reader json) throws IOException {
+        TypeAdapter<StageResult> stageResultAdapter = GSON.getAdapter(StageResult.class);
+        List<StageResult> stages = new ArrayList<>();
+        JsonReader reader = new JsonReader(json);
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("stages")) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    stages.add(stageResultAdapter.read(reader));
+                }
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new StageHistory(stages);
     }
 
     private final List<StageResult> stages;
@@ -40,6 +75,6 @@ public class StageHistory {
     }
 
     public String toJson() {
-        return new Gson().toJson(this);
+        return GSON.toJson(this);
     }
 }
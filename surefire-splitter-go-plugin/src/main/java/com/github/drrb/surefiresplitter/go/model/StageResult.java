@@ -69,4 +69,11 @@ public class StageResult {
     public boolean isPassed() {
         return "Passed".equals(result);
     }
+
+    /**
+     * Go reports the result of a stage that's still running as "Unknown".
+     */
+    public boolean isCompleted() {
+        return result != null && !"Unknown".equals(result);
+    }
 }
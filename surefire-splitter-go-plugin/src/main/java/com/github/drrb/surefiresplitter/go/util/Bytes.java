@@ -17,11 +17,29 @@
  */
 package com.github.drrb.surefiresplitter.go.util;
 
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
 public class Bytes {
 
-    public static int of(String humanReadableSize) {
-        String number = humanReadableSize.replaceAll("\\s*[mM][bB]?", "000000");
-        return Integer.parseInt(number);
+    private static final Pattern HUMAN_READABLE_SIZE = Pattern.compile("(\\d+)\\s*([kKmMgG]?)[bB]?");
+
+    public static long of(String humanReadableSize) {
+        Matcher matcher = HUMAN_READABLE_SIZE.matcher(humanReadableSize.trim());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Expected a size like '10 MB', but it was '" + humanReadableSize + "'");
+        }
+        long number = Long.parseLong(matcher.group(1));
+        switch (matcher.group(2).toLowerCase()) {
+            case "k":
+                return number * 1000;
+            case "m":
+                return number * 1000000;
+            case "g":
+                return number * 1000000000;
+            default:
+                return number;
+        }
     }
 
     public static String render(long number) {
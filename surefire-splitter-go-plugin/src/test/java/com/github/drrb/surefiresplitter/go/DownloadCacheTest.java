@@ -0,0 +1,145 @@
+/**
+ * Surefire Splitter Go Plugin
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter Go Plugin. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.go;
+
+import com.github.drrb.surefiresplitter.go.GoServer.DownloadCache;
+import com.github.drrb.surefiresplitter.go.GoServer.DownloadCache.Download;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class DownloadCacheTest {
+
+    private static final String BASE_URL = "https://localhost:8154/go/";
+
+    @Rule
+    public final TemporaryFolder tempDir = new TemporaryFolder();
+
+    private final Map<String, String> serverFiles = new HashMap<>();
+    private final Map<String, Integer> downloadCounts = new HashMap<>();
+    private Path baseDir;
+    private DownloadCache cache;
+
+    @Before
+    public void setUpCache() throws Exception {
+        baseDir = tempDir.newFolder(".go-downloads").toPath();
+        cache = DownloadCache.create(BASE_URL, baseDir, Long.MAX_VALUE, Long.MAX_VALUE);
+    }
+
+    @Test
+    public void keepsIdenticalFilesFromDifferentUrlsOnce() throws Exception {
+        serverFiles.put(url(1, "TEST-com.example.FirstTest.xml"), report("com.example.FirstTest", "0.5"));
+        serverFiles.put(url(2, "TEST-com.example.FirstTest.xml"), report("com.example.FirstTest", "0.5"));
+        serverFiles.put(url(3, "TEST-com.example.FirstTest.xml"), report("com.example.FirstTest", "0.7"));
+
+        Path first = cache.getOrDownload(url(1, "TEST-com.example.FirstTest.xml"), fakeDownload());
+        Path second = cache.getOrDownload(url(2, "TEST-com.example.FirstTest.xml"), fakeDownload());
+        Path third = cache.getOrDownload(url(3, "TEST-com.example.FirstTest.xml"), fakeDownload());
+
+        assertThat(second, is(first));
+        assertThat(third, is(not(first)));
+        assertThat(cache.readReport(first).getTime(), is(0.5));
+        assertThat(Files.exists(first.resolveSibling(first.getFileName() + ".parsed")), is(true));
+        assertThat(cache.readReport(third).getTime(), is(0.7));
+    }
+
+    @Test
+    public void onlyDownloadsEachUrlOnce() throws Exception {
+        serverFiles.put(url(1, "TEST-com.example.FirstTest.xml"), report("com.example.FirstTest", "0.5"));
+
+        Path first = cache.getOrDownload(url(1, "TEST-com.example.FirstTest.xml"), fakeDownload());
+        Path second = cache.getOrDownload(url(1, "TEST-com.example.FirstTest.xml"), fakeDownload());
+
+        assertThat(second, is(first));
+        assertThat(downloadCounts.get(url(1, "TEST-com.example.FirstTest.xml")), is(1));
+    }
+
+    @Test
+    public void downloadsAgainIfTheContentsHaveBeenEvicted() throws Exception {
+        serverFiles.put(url(1, "TEST-com.example.FirstTest.xml"), report("com.example.FirstTest", "0.5"));
+
+        Path first = cache.getOrDownload(url(1, "TEST-com.example.FirstTest.xml"), fakeDownload());
+        Files.delete(first);
+        Path second = cache.getOrDownload(url(1, "TEST-com.example.FirstTest.xml"), fakeDownload());
+
+        assertThat(second, is(first));
+        assertThat(Files.exists(second), is(true));
+        assertThat(downloadCounts.get(url(1, "TEST-com.example.FirstTest.xml")), is(2));
+    }
+
+    @Test
+    public void leavesTheCacheAloneWhileSomethingElseIsUsingIt() throws Exception {
+        serverFiles.put(url(1, "TEST-com.example.FirstTest.xml"), report("com.example.FirstTest", "0.5"));
+        DownloadCache otherCache = DownloadCache.create(BASE_URL, baseDir, 0, 0);
+        DownloadCache tinyCache = DownloadCache.create(BASE_URL, baseDir, 0, 0);
+
+        otherCache.use();
+        Path download = otherCache.getOrDownload(url(1, "TEST-com.example.FirstTest.xml"), fakeDownload());
+        tinyCache.tidyUp();
+        assertThat(Files.exists(download), is(true));
+
+        otherCache.tidyUp();
+        tinyCache.tidyUp();
+        assertThat(Files.exists(download), is(false));
+    }
+
+    @Test(expected = Download.Skipped.class)
+    public void givesUpOnDownloadsThatAreTooLargeToBeReports() throws Exception {
+        Path downloadTarget = tempDir.newFile("download").toPath();
+        DownloadCache.copy(new ByteArrayInputStream(new byte[2048]), downloadTarget, 1024);
+    }
+
+    private Download fakeDownload() {
+        return new Download() {
+            @Override
+            public void download(String url, Path downloadTarget) {
+                Integer downloadCount = downloadCounts.get(url);
+                downloadCounts.put(url, downloadCount == null ? 1 : downloadCount + 1);
+                try {
+                    Files.write(downloadTarget, serverFiles.get(url).getBytes(UTF_8));
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }
+        };
+    }
+
+    private static String url(int pipelineCounter, String fileName) {
+        return BASE_URL + "files/PipelineName/" + pipelineCounter + "/StageName/1/JobName/test-reports/" + fileName;
+    }
+
+    private static String report(String testSuiteName, String time) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+                "<testsuite name=\"" + testSuiteName + "\" time=\"" + time + "\" tests=\"1\" errors=\"0\" skipped=\"0\" failures=\"0\">\n" +
+                "  <testcase name=\"works\" classname=\"" + testSuiteName + "\" time=\"" + time + "\"/>\n" +
+                "</testsuite>\n";
+    }
+}
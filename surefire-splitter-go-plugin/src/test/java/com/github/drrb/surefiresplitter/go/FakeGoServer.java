@@ -23,17 +23,22 @@ import com.squareup.okhttp.mockwebserver.MockResponse;
 import com.squareup.okhttp.mockwebserver.MockWebServer;
 import com.squareup.okhttp.mockwebserver.RecordedRequest;
 import com.squareup.okhttp.mockwebserver.SocketPolicy;
+import okio.Buffer;
 import org.junit.rules.TestWatcher;
 import org.junit.runner.Description;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.net.URI;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static com.github.drrb.surefiresplitter.go.model.GoFile.FileType.file;
 import static com.github.drrb.surefiresplitter.go.model.GoFile.FileType.folder;
@@ -45,14 +50,20 @@ import static java.util.Collections.reverse;
 import static java.util.Collections.sort;
 
 public class FakeGoServer extends TestWatcher {
-    private final Queue<SocketPolicy> enqueuedSocketBehavior = new LinkedList<>();
+    private final Queue<SocketPolicy> enqueuedSocketBehavior = new ConcurrentLinkedQueue<>();
     private final int port;
     private final MockWebServer server;
     private final TestGoKeyStores keyStores;
+    private final Path pipelinesDir;
     private boolean crashed;
 
     public FakeGoServer(int port) {
+        this(port, Paths.get("src/test/resources/com/github/drrb/surefiresplitter/pipelines"));
+    }
+
+    public FakeGoServer(int port, Path pipelinesDir) {
         this.port = port;
+        this.pipelinesDir = pipelinesDir;
         this.server = new MockWebServer();
         this.keyStores = TestGoKeyStores.get();
         server.useHttps(keyStores.getServerSslSocketFactory(), false);
@@ -91,7 +102,7 @@ public class FakeGoServer extends TestWatcher {
         stop();
     }
 
-    private void start() {
+    public void start() {
         try {
             server.start(port);
         } catch (IOException e) {
@@ -99,7 +110,7 @@ public class FakeGoServer extends TestWatcher {
         }
     }
 
-    private void stop() {
+    public void stop() {
         try {
             server.shutdown();
         } catch (IOException e) {
@@ -117,12 +128,12 @@ public class FakeGoServer extends TestWatcher {
 
         Matcher stageHistoryPatterMatcher = Pattern.compile("/api/stages/(\\w+)/(\\w+)/history").matcher(request.getPath());
         if (stageHistoryPatterMatcher.find()) {
-            return serveStageHistory(stageHistoryPatterMatcher.group(1), stageHistoryPatterMatcher.group(2));
+            return serveStageHistory(request, stageHistoryPatterMatcher.group(1), stageHistoryPatterMatcher.group(2));
         }
 
         Matcher fileListPatternMatcher = Pattern.compile("/go/files/(\\w+/\\d+/\\w+/\\d+/\\w+(?:-runInstance-\\d+)?).json").matcher(request.getPath());
         if (fileListPatternMatcher.find()) {
-            return serveJobDir(fileListPatternMatcher.group(1));
+            return serveJobDir(request, fileListPatternMatcher.group(1));
         }
 
         Matcher fileDownloadPatternMatcher = Pattern.compile("/go/files/(\\w+/\\d+/\\w+/\\d+/\\w+(?:-runInstance-\\d+)?)/(.*)").matcher(request.getPath());
@@ -136,7 +147,7 @@ public class FakeGoServer extends TestWatcher {
         return response(400, "Unrecognized path: " + request.getPath());
     }
 
-    private MockResponse serveStageHistory(String pipelineName, String stageName) {
+    private MockResponse serveStageHistory(RecordedRequest request, String pipelineName, String stageName) {
         List<StageResult> stages = new LinkedList<>();
         Path pipelineDir = getPipelinesDir().resolve(pipelineName);
         for (File pipelineRunDir : childrenInReverseOrder(pipelineDir)) {
@@ -165,9 +176,8 @@ public class FakeGoServer extends TestWatcher {
             }
         }
         StageHistory stageHistory = new StageHistory(stages);
-        return response(200, "OK")
-                .setHeader("Content-Type", "application/json; charset=utf-8")
-                .setBody(stageHistory.toJson());
+        return jsonResponse(request, stageHistory.toJson())
+                .setHeader("Content-Type", "application/json; charset=utf-8");
     }
 
     private List<File> childrenInReverseOrder(Path dir) {
@@ -177,7 +187,7 @@ public class FakeGoServer extends TestWatcher {
         return pipelineRunDirs;
     }
 
-    private MockResponse serveJobDir(String jobDirPath) {
+    private MockResponse serveJobDir(RecordedRequest request, String jobDirPath) {
         try {
             Path jobDir = getPipelinesDir().resolve(jobDirPath);
             if (!Files.isDirectory(jobDir)) {
@@ -186,9 +196,7 @@ public class FakeGoServer extends TestWatcher {
             GoFilesCreatingFileVisitor visitor = new GoFilesCreatingFileVisitor(getUrl("/files/" + jobDirPath), jobDir);
             Files.walkFileTree(jobDir, visitor);
             GoFiles goFiles = visitor.getGoFiles();
-            String responseBody = goFiles.toJson();
-            return response(200, "OK")
-                    .setBody(responseBody);
+            return jsonResponse(request, goFiles.toJson());
         } catch (IOException e) {
             e.printStackTrace();
             return response(500, "Error: " + e.getMessage());
@@ -198,7 +206,12 @@ public class FakeGoServer extends TestWatcher {
     private MockResponse serveJobFile(Path jobFile) {
         try {
             Path file = getPipelinesDir().resolve(jobFile);
-            if (Files.exists(file)) {
+            Path zippedDir = file.resolveSibling(file.getFileName().toString().replaceAll("\\.zip$", ""));
+            if (!Files.exists(file) && Files.isDirectory(zippedDir)) {
+                return response(200, "OK")
+                        .setHeader("Content-Type", "application/zip")
+                        .setBody(new Buffer().write(zip(zippedDir)));
+            } else if (Files.exists(file)) {
                 MockResponse response = response(200, "OK")
                         .setBody(new String(readAllBytes(file), UTF_8));
                 if (file.toString().contains("TooLarge")) {
@@ -214,10 +227,37 @@ public class FakeGoServer extends TestWatcher {
         }
     }
 
+    // Like Go, put the files in the zip under the name of the zipped folder
+    private byte[] zip(Path dir) throws IOException {
+        final Path base = dir.getParent();
+        final ByteArrayOutputStream zipBytes = new ByteArrayOutputStream();
+        try (final ZipOutputStream zip = new ZipOutputStream(zipBytes)) {
+            Files.walkFileTree(dir, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    zip.putNextEntry(new ZipEntry(base.relativize(file).toString()));
+                    zip.write(readAllBytes(file));
+                    return CONTINUE;
+                }
+            });
+        }
+        return zipBytes.toByteArray();
+    }
+
+    // Like Go, tag JSON responses so that clients can ask whether they've changed
+    private MockResponse jsonResponse(RecordedRequest request, String body) {
+        String etag = "\"" + Integer.toHexString(body.hashCode()) + "\"";
+        if (etag.equals(request.getHeader("If-None-Match"))) {
+            return response(304, "Not Modified").setHeader("ETag", etag);
+        }
+        return response(200, "OK").setHeader("ETag", etag).setBody(body);
+    }
+
     private MockResponse response(int statusCode, Object message) {
         MockResponse response = new MockResponse().setStatus("HTTP/1.1 " + statusCode + " " + message);
-        if (!enqueuedSocketBehavior.isEmpty()) {
-            response.setSocketPolicy(enqueuedSocketBehavior.remove());
+        SocketPolicy socketBehavior = enqueuedSocketBehavior.poll();
+        if (socketBehavior != null) {
+            response.setSocketPolicy(socketBehavior);
         }
         return response;
     }
@@ -227,7 +267,7 @@ public class FakeGoServer extends TestWatcher {
     }
 
     private Path getPipelinesDir() {
-        return Paths.get("src/test/resources/com/github/drrb/surefiresplitter/pipelines");
+        return pipelinesDir;
     }
 }
 
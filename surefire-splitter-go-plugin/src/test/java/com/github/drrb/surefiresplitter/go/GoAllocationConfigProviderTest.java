@@ -43,6 +43,22 @@ public class GoAllocationConfigProviderTest {
         assertThat(provider.getDescription(), containsString("chunk 1 of 2"));
     }
 
+    @Test
+    public void identifiesTheRunTheSameWayForEverySplitOfAJob() {
+        HashMap<String, String> env = new HashMap<>(ENV_ON_GO_WITH_SPLITTING);
+        env.put("GO_PIPELINE_NAME", "Build");
+        env.put("GO_PIPELINE_COUNTER", "12");
+        env.put("GO_STAGE_NAME", "Test");
+        env.put("GO_STAGE_COUNTER", "2");
+        env.put("GO_JOB_NAME", "unit-tests-runInstance-1");
+        String firstSplitRunId = new GoAllocationConfigProvider(env).getRunId();
+        env.put("GO_JOB_NAME", "unit-tests-runInstance-2");
+        String secondSplitRunId = new GoAllocationConfigProvider(env).getRunId();
+
+        assertThat(firstSplitRunId, is("Build/12/Test/2/unit-tests"));
+        assertThat(secondSplitRunId, is(firstSplitRunId));
+    }
+
     @Test
     public void isNotAvailableOnGoWhenSplittingNotEnabled() {
         GoAllocationConfigProvider provider = new GoAllocationConfigProvider(ENV_ON_GO_WITHOUT_SPLITTING);
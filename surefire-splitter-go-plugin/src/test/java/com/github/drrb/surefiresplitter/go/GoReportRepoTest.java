@@ -19,6 +19,7 @@ package com.github.drrb.surefiresplitter.go;
 
 import com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestSuite;
 import com.github.drrb.surefiresplitter.spi.ReportRepo;
+import com.squareup.okhttp.mockwebserver.RecordedRequest;
 import org.hamcrest.Description;
 import org.hamcrest.Matcher;
 import org.hamcrest.TypeSafeMatcher;
@@ -29,13 +30,14 @@ import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 import static com.squareup.okhttp.mockwebserver.SocketPolicy.*;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
@@ -113,7 +115,8 @@ public class GoReportRepoTest {
         assertThat(provider.isAvailable(), is(true));
 
         List<JunitTestSuite> testSuites = provider.getExistingReports().getTestSuites();
-        assertThat(testSuites.size(), is(5));
+        // The four from the most recent run, then the five from the last passed one
+        assertThat(testSuites.size(), is(9));
         assertThat(testSuites.get(0).getName(), is("com.example.myproject.FirstTest"));
         assertThat(testSuites.get(0).getTime(), is(0.011));
         assertThat(testSuites.get(1).getName(), is("com.example.myproject.SecondTest"));
@@ -126,6 +129,22 @@ public class GoReportRepoTest {
         assertThat(testSuites.get(4).getTime(), is(0.005));
     }
 
+    @Test
+    public void shouldKeepTheReportFromEachRunOfATestClass() throws Exception {
+        Map<String, String> nextRunEnv = new HashMap<>(ENV_ON_GO);
+        nextRunEnv.put("GO_PIPELINE_COUNTER", "543");
+        List<JunitTestSuite> testSuites = new GoReportRepo.Provider(nextRunEnv, workingDir).getExistingReports().getTestSuites();
+
+        int firstTestReports = 0;
+        for (JunitTestSuite testSuite : testSuites) {
+            if (testSuite.getName().equals("com.example.myproject.FirstTest")) {
+                firstTestReports++;
+            }
+        }
+        // Once for each of the two runs, even though it ran in two splits of each
+        assertThat(firstTestReports, is(2));
+    }
+
     @Test
     public void shouldOnlyLookAsFarBackInHistoryAsConfigured() throws Exception {
         Map<String, String> nextRunEnv = new HashMap<>(ENV_ON_GO);
@@ -158,11 +177,158 @@ public class GoReportRepoTest {
         assertThat(testSuites.size(), is(5));
         assertThat(server.getServer().getRequestCount(), is(10));
 
-        // Accesses across JVMs should check for new files, but shouldn't re-download files
+        // Accesses across JVMs should check for new runs, but shouldn't look at finished runs again
         ReportRepo repoInSecondModule = new GoReportRepo.Provider(ENV_ON_GO, workingDir).getExistingReports();
         testSuites = repoInSecondModule.getTestSuites();
         assertThat(testSuites.size(), is(5));
-        assertThat(server.getServer().getRequestCount(), is(15));
+        assertThat(server.getServer().getRequestCount(), is(11));
+    }
+
+    @Test
+    public void onlyStoresTheHistoryOfFinishedRuns() throws Exception {
+        Map<String, String> nextRunEnv = new HashMap<>(ENV_ON_GO);
+        nextRunEnv.put("GO_PIPELINE_COUNTER", "543");
+        List<JunitTestSuite> firstTestSuites = new GoReportRepo.Provider(nextRunEnv, workingDir).getExistingReports().getTestSuites();
+        int firstRequestCount = server.getServer().getRequestCount();
+        assertThat(firstRequestCount, is(18));
+
+        // The previous stage run's result is still unknown, so its files are listed again (but not re-downloaded)
+        List<JunitTestSuite> secondTestSuites = new GoReportRepo.Provider(nextRunEnv, workingDir).getExistingReports().getTestSuites();
+        assertThat(server.getServer().getRequestCount() - firstRequestCount, is(5));
+        assertThat(secondTestSuites.size(), is(firstTestSuites.size()));
+        for (int i = 0; i < firstTestSuites.size(); i++) {
+            assertThat(secondTestSuites.get(i).getName(), is(firstTestSuites.get(i).getName()));
+            assertThat(secondTestSuites.get(i).getTime(), is(firstTestSuites.get(i).getTime()));
+        }
+    }
+
+    @Test
+    public void asksWhetherTheStageHistoryAndUnfinishedRunsHaveChangedInsteadOfDownloadingThemAgain() throws Exception {
+        Map<String, String> nextRunEnv = new HashMap<>(ENV_ON_GO);
+        nextRunEnv.put("GO_PIPELINE_COUNTER", "543");
+        new GoReportRepo.Provider(nextRunEnv, workingDir).getExistingReports().getTestSuites();
+        int firstRequestCount = server.getServer().getRequestCount();
+        for (int i = 0; i < firstRequestCount; i++) {
+            server.getServer().takeRequest();
+        }
+
+        new GoReportRepo.Provider(nextRunEnv, workingDir).getExistingReports().getTestSuites();
+        List<String> conditionalRequests = new LinkedList<>();
+        for (int i = server.getServer().getRequestCount() - firstRequestCount; i > 0; i--) {
+            RecordedRequest request = server.getServer().takeRequest();
+            if (request.getHeader("If-None-Match") != null) {
+                conditionalRequests.add(request.getPath());
+            }
+        }
+        Collections.sort(conditionalRequests);
+        assertThat(conditionalRequests, is(asList(
+                "/go/api/stages/PipelineName/StageName/history",
+                "/go/files/PipelineName/542/StageName/1/JobName-runInstance-1.json",
+                "/go/files/PipelineName/542/StageName/1/JobName-runInstance-2.json",
+                "/go/files/PipelineName/542/StageName/1/JobName-runInstance-3.json"
+        )));
+    }
+
+    @Test
+    public void keepsFileListingsFromFinishedRunsForGood() throws Exception {
+        new GoReportRepo.Provider(ENV_ON_GO, workingDir).getExistingReports().getTestSuites();
+        assertThat(server.getServer().getRequestCount(), is(10));
+
+        // Without the stored history, the reports have to be read again, but the listings and reports are still cached
+        for (int split = 1; split <= 3; split++) {
+            Files.delete(getAgentDir("pipelines", ".go-downloads", ".history", "PipelineName", "541", "StageName", "2", "JobName-runInstance-" + split).toPath());
+        }
+        List<JunitTestSuite> testSuites = new GoReportRepo.Provider(ENV_ON_GO, workingDir).getExistingReports().getTestSuites();
+        assertThat(testSuites.size(), is(5));
+        // The stage history, and the report that's too large to download
+        assertThat(server.getServer().getRequestCount(), is(12));
+    }
+
+    @Test
+    public void forgetsStoredHistoryThatsNoLongerLookedBackOver() throws Exception {
+        new GoReportRepo.Provider(ENV_ON_GO, workingDir).getExistingReports().getTestSuites();
+        File storedRun = getAgentDir("pipelines", ".go-downloads", ".history", "PipelineName", "541", "StageName", "2", "JobName-runInstance-1");
+        File oldStoredRun = getAgentDir("pipelines", ".go-downloads", ".history", "PipelineName", "400", "StageName", "1", "JobName-runInstance-1");
+        File otherJobsStoredRun = getAgentDir("pipelines", ".go-downloads", ".history", "PipelineName", "400", "StageName", "1", "OtherJob");
+        oldStoredRun.getParentFile().mkdirs();
+        Files.copy(storedRun.toPath(), oldStoredRun.toPath());
+        Files.copy(storedRun.toPath(), otherJobsStoredRun.toPath());
+
+        new GoReportRepo.Provider(ENV_ON_GO, workingDir).getExistingReports().getTestSuites();
+        assertThat(storedRun.exists(), is(true));
+        assertThat(oldStoredRun.exists(), is(false));
+        assertThat(otherJobsStoredRun.exists(), is(true));
+    }
+
+    @Test
+    public void keepsParsedReportsInTheDownloadCacheSoTheyDontHaveToBeParsedAgain() throws Exception {
+        Map<String, String> nextRunEnv = new HashMap<>(ENV_ON_GO);
+        nextRunEnv.put("GO_PIPELINE_COUNTER", "543");
+        List<JunitTestSuite> firstTestSuites = new GoReportRepo.Provider(nextRunEnv, workingDir).getExistingReports().getTestSuites();
+
+        // The stage run is still going, so its reports are read from the cache again, but the parsed copies are used
+        Path downloadedReport = getDownloadedContents("PipelineName", "542", "StageName", "1", "JobName", "test-reports", "TEST-com.example.myproject.SecondTest.xml");
+        assertThat(Files.exists(downloadedReport.resolveSibling(downloadedReport.getFileName() + ".parsed")), is(true));
+        Files.write(downloadedReport, "Not XML".getBytes(UTF_8));
+
+        List<JunitTestSuite> secondTestSuites = new GoReportRepo.Provider(nextRunEnv, workingDir).getExistingReports().getTestSuites();
+        assertThat(secondTestSuites.size(), is(firstTestSuites.size()));
+        for (int i = 0; i < firstTestSuites.size(); i++) {
+            assertThat(secondTestSuites.get(i).getName(), is(firstTestSuites.get(i).getName()));
+            assertThat(secondTestSuites.get(i).getTime(), is(firstTestSuites.get(i).getTime()));
+        }
+    }
+
+    @Test
+    public void evictsDownloadsThatWerentUsedWhenTheDownloadCacheGetsTooBig() throws Exception {
+        Map<String, String> nextRunEnv = new HashMap<>(ENV_ON_GO);
+        nextRunEnv.put("GO_PIPELINE_COUNTER", "543");
+        new GoReportRepo.Provider(nextRunEnv, workingDir).getExistingReports().getTestSuites();
+        Path finishedRunReport = getDownloadedContents("PipelineName", "541", "StageName", "2", "JobName", "test-reports", "TEST-com.example.myproject.SecondTest.xml");
+        assertThat(getAgentDir("pipelines", ".go-downloads", ".urls", "PipelineName", "541").exists(), is(true));
+
+        // The finished run's reports come from the stored history, so its downloads aren't needed any more. The
+        // unfinished run's downloads are read again, so they're kept even though they don't fit.
+        nextRunEnv.put("SUREFIRE_SPLITTER_DOWNLOAD_CACHE_SIZE", "1 KB");
+        List<JunitTestSuite> testSuites = new GoReportRepo.Provider(nextRunEnv, workingDir).getExistingReports().getTestSuites();
+        assertThat(testSuites.size(), is(9));
+        assertThat(getAgentDir("pipelines", ".go-downloads", ".urls", "PipelineName", "541").exists(), is(false));
+        assertThat(Files.exists(finishedRunReport), is(false));
+        assertThat(Files.exists(getDownloadedContents("PipelineName", "542", "StageName", "1", "JobName", "test-reports", "TEST-com.example.myproject.SecondTest.xml")), is(true));
+        assertThat(getAgentDir("pipelines", ".go-downloads", DownloadIndex.FILE_NAME).exists(), is(true));
+    }
+
+    @Test
+    public void shouldReadReportsFromZippedFoldersInBulkModeWhenConfigured() throws Exception {
+        Map<String, String> bulkDownloadEnv = new HashMap<>(ENV_ON_GO);
+        bulkDownloadEnv.put("SUREFIRE_SPLITTER_DOWNLOAD_ZIPS", "true");
+
+        List<JunitTestSuite> testSuites = new GoReportRepo.Provider(bulkDownloadEnv, workingDir).getExistingReports().getTestSuites();
+        Set<String> testSuiteNames = new HashSet<>();
+        for (JunitTestSuite testSuite : testSuites) {
+            testSuiteNames.add(testSuite.getName());
+        }
+        // Only the loose copy of the oversized-looking report claims to be too large, so it gets read from the zip
+        assertThat(testSuiteNames, is((Set<String>) new HashSet<>(asList(
+                "com.example.myproject.FirstTest",
+                "com.example.myproject.SecondTest",
+                "com.example.myproject.TooLarge",
+                "com.example.myproject.ThirdTest",
+                "com.example.myproject.FourthTest",
+                "com.example.myproject.FifthTest"
+        ))));
+        assertThat(testSuites.size(), is(6));
+        // History, a listing for each split, a zip of each split's "test-reports" folder, and the one loose report
+        assertThat(server.getServer().getRequestCount(), is(8));
+        assertThat(Files.exists(getDownloadedContents("PipelineName", "541", "StageName", "2", "JobName", "test-reports", "TEST-com.example.myproject.FirstTest.xml")), is(true));
+
+        // Without the stored history, the reports have to be read again, but they've been kept from the zips
+        for (int split = 1; split <= 3; split++) {
+            Files.delete(getAgentDir("pipelines", ".go-downloads", ".history", "PipelineName", "541", "StageName", "2", "JobName-runInstance-" + split).toPath());
+        }
+        assertThat(new GoReportRepo.Provider(bulkDownloadEnv, workingDir).getExistingReports().getTestSuites().size(), is(6));
+        // Just the stage history
+        assertThat(server.getServer().getRequestCount(), is(9));
     }
 
     @Test
@@ -200,6 +366,8 @@ public class GoReportRepoTest {
 
     @Test
     public void failsUsefullyWhenDownloadFails() throws Exception {
+        server.enqueueSocketBehavior(KEEP_OPEN); // Stage history
+        server.enqueueSocketBehavior(KEEP_OPEN); // File listings for the three splits
         server.enqueueSocketBehavior(KEEP_OPEN);
         server.enqueueSocketBehavior(KEEP_OPEN);
         server.enqueueSocketBehavior(DISCONNECT_DURING_RESPONSE_BODY);
@@ -252,6 +420,15 @@ public class GoReportRepoTest {
         }
     }
 
+    private Path getDownloadedContents(String... urlPathParts) throws IOException {
+        Path pointer = getAgentDir("pipelines", ".go-downloads", ".urls").toPath();
+        for (String urlPathPart : urlPathParts) {
+            pointer = pointer.resolve(urlPathPart);
+        }
+        String hash = new String(Files.readAllBytes(pointer), UTF_8);
+        return getAgentDir("pipelines", ".go-downloads", ".blobs", hash.substring(0, 2), hash).toPath();
+    }
+
     private File getAgentDir(String... pathParts) {
         Path dir = agentBasedir.getRoot().toPath();
         for (String pathPart : pathParts) {
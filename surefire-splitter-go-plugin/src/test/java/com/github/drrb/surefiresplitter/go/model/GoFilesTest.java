@@ -0,0 +1,50 @@
+/**
+ * Surefire Splitter Go Plugin
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter Go Plugin. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.go.model;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+
+import static com.github.drrb.surefiresplitter.spi.FileFilters.SUREFIRE_REPORT_FILES;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.*;
+
+public class GoFilesTest {
+
+    @Test
+    public void shouldOnlyKeepMatchingFilesAndTheFoldersTheyreInWhenReading() throws Exception {
+        GoFiles files = GoFiles.fromJson(new StringReader("[" +
+                "{\"name\":\"cruise-output\",\"url\":\"https://go/files/cruise-output\",\"type\":\"folder\",\"files\":[" +
+                "  {\"name\":\"console.log\",\"url\":\"https://go/files/cruise-output/console.log\",\"type\":\"file\"}]}," +
+                "{\"name\":\"test-reports\",\"url\":\"https://go/files/test-reports\",\"type\":\"folder\",\"files\":[" +
+                "  {\"name\":\"TEST-com.example.FirstTest.xml\",\"url\":\"https://go/files/test-reports/TEST-com.example.FirstTest.xml\",\"type\":\"file\"}," +
+                "  {\"name\":\"com.example.FirstTest.txt\",\"url\":\"https://go/files/test-reports/com.example.FirstTest.txt\",\"type\":\"file\"}," +
+                "  {\"type\":\"folder\",\"files\":[],\"name\":\"empty\",\"url\":\"https://go/files/test-reports/empty\"}]}," +
+                "{\"name\":\"TEST-com.example.SecondTest.xml\",\"url\":\"https://go/files/TEST-com.example.SecondTest.xml\",\"type\":\"file\",\"extra\":{\"ignored\":[1,2]}}" +
+                "]"), SUREFIRE_REPORT_FILES);
+
+        assertThat(files.size(), is(2));
+        assertThat(files.get(0).getName(), is("test-reports"));
+        assertThat(files.get(0).isFolder(), is(true));
+        assertThat(files.get(0).getFiles().size(), is(1));
+        assertThat(files.get(0).getFiles().get(0).getUrl(), is("https://go/files/test-reports/TEST-com.example.FirstTest.xml"));
+        assertThat(files.get(1).getName(), is("TEST-com.example.SecondTest.xml"));
+        assertThat(files.get(1).isFolder(), is(false));
+    }
+}
@@ -26,8 +26,11 @@ public class BytesTest {
 
     @Test
     public void parsesHumanReadableAmounts() {
-        assertThat(Bytes.of("10m"), is(10000000));
-        assertThat(Bytes.of("10 MB"), is(10000000));
+        assertThat(Bytes.of("10m"), is(10000000L));
+        assertThat(Bytes.of("10 MB"), is(10000000L));
+        assertThat(Bytes.of("512 KB"), is(512000L));
+        assertThat(Bytes.of("20 GB"), is(20000000000L));
+        assertThat(Bytes.of("100"), is(100L));
     }
 
     @Test
@@ -37,6 +37,8 @@ package com.github.drrb.surefiresplitter.junit;
  */
 
 import com.github.drrb.surefiresplitter.TestAllocator;
+import com.github.drrb.surefiresplitter.allocation.Allocation;
+import com.github.drrb.surefiresplitter.allocation.TestMethods;
 import org.apache.maven.surefire.booter.Command;
 import org.apache.maven.surefire.booter.MasterProcessListener;
 import org.apache.maven.surefire.booter.MasterProcessReader;
@@ -59,7 +61,11 @@ import org.junit.runner.notification.StoppedByUserException;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.Set;
 
 import static java.lang.reflect.Modifier.isAbstract;
@@ -105,6 +111,12 @@ public class SplittingJunit4Provider
 
     private TestsToRun testsToRun;
 
+    private Allocation allocation;
+
+    private TestAllocator allocator;
+
+    private final Map<String, Double> testSetDurations = new LinkedHashMap<String, Double>();
+
     public SplittingJunit4Provider( ProviderParameters booterParameters )
     {
         // don't start a thread in MasterProcessReader while we are in in-plugin process
@@ -199,6 +211,11 @@ public class SplittingJunit4Provider
             closeCommandsReader();
         }
 
+        if ( allocator != null )
+        {
+            allocator.reportAccuracy( testSetDurations );
+        }
+
         rethrowAnyTestMechanismFailures( result );
         return reporterFactory.close();
     }
@@ -243,6 +260,7 @@ public class SplittingJunit4Provider
     {
         final ReportEntry report = new SimpleReportEntry( getClass().getName(), clazz.getName() );
         reporter.testSetStarting( report );
+        long startTime = System.nanoTime();
         try
         {
             executeWithRerun( clazz, notifier );
@@ -266,15 +284,29 @@ public class SplittingJunit4Provider
         finally
         {
             reporter.testSetCompleted( report );
+            recordTestSetDuration( clazz, startTime );
         }
     }
 
+    /**
+     * Times test sets the same way as Surefire does in its reports, so that we can see how accurately their durations
+     * were predicted from previous reports.
+     */
+    private void recordTestSetDuration( Class<?> clazz, long startTime )
+    {
+        double seconds = ( System.nanoTime() - startTime ) / 1e9;
+        Double secondsSoFar = testSetDurations.get( clazz.getName() );
+        testSetDurations.put( clazz.getName(), secondsSoFar == null ? seconds : secondsSoFar + seconds );
+    }
+
     private void executeWithRerun( Class<?> clazz, Notifier notifier ) throws TestSetFailedException
     {
         JUnitTestFailureListener failureListener = new JUnitTestFailureListener();
         notifier.addListener( failureListener );
         boolean hasMethodFilter = testResolver != null && testResolver.hasMethodPatterns();
-        execute( clazz, notifier, hasMethodFilter ? new TestResolverFilter() : new NullFilter() );
+        Filter filter = hasMethodFilter ? new TestResolverFilter() : new NullFilter();
+        TestMethods allocatedMethods = allocation == null ? null : allocation.getMethods( clazz );
+        execute( clazz, notifier, allocatedMethods == null ? filter : new AllocatedMethodsFilter( allocatedMethods, filter ) );
 
         // Rerun failing tests if rerunFailingTestsCount is larger than 0
         if ( isRerunFailingTests() )
@@ -299,11 +331,21 @@ public class SplittingJunit4Provider
 
     private TestsToRun scanClassPath()
     {
+        // Get the test history loading while the classes are being scanned
+        allocator = TestAllocator.get( getClass().getClassLoader() );
+        allocator.loadHistoryInBackground();
         final TestsToRun scannedClasses = scanResult.applyFilter( jUnit4TestChecker, testClassLoader );
-        TestAllocator allocator = TestAllocator.get( getClass().getClassLoader() );
-        Iterable<Class<?>> testClasses = allocator.allocate( runOrderCalculator.orderTestClasses( scannedClasses ) );
+        if ( allocator.isUsingWorkQueue() )
+        {
+            Iterable<Class<?>> queuedTests = allocator.takeFromWorkQueue( scannedClasses );
+            if ( queuedTests != null )
+            {
+                return new QueuedTestsToRun( queuedTests );
+            }
+        }
+        allocation = allocator.allocate( runOrderCalculator.orderTestClasses( scannedClasses ) );
         LinkedHashSet<Class<?>> testClassSet = new LinkedHashSet<Class<?>>();
-        for ( Class<?> testClass : testClasses ) {
+        for ( Class<?> testClass : allocation ) {
             testClassSet.add( testClass );
         }
         return new TestsToRun( testClassSet );
@@ -450,6 +492,68 @@ public class SplittingJunit4Provider
         }
     }
 
+    /**
+     * Tests taken from a work queue as they're run, so they can't be read eagerly.
+     */
+    private static final class QueuedTestsToRun
+            extends TestsToRun
+    {
+        private final Iterable<Class<?>> queuedTests;
+
+        QueuedTestsToRun( Iterable<Class<?>> queuedTests )
+        {
+            super( Collections.<Class<?>>emptySet() );
+            this.queuedTests = queuedTests;
+        }
+
+        @Override
+        public Iterator<Class<?>> iterator()
+        {
+            return queuedTests.iterator();
+        }
+
+        @Override
+        public boolean allowEagerReading()
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Only runs the methods of a test class that were allocated to this chunk, when the test class has been split
+     * between chunks.
+     */
+    private static final class AllocatedMethodsFilter
+            extends Filter
+    {
+        private final TestMethods allocatedMethods;
+
+        private final Filter delegate;
+
+        AllocatedMethodsFilter( TestMethods allocatedMethods, Filter delegate )
+        {
+            this.allocatedMethods = allocatedMethods;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean shouldRun( Description description )
+        {
+            if ( !delegate.shouldRun( description ) )
+            {
+                return false;
+            }
+            final ClassMethod cm = cutTestClassAndMethod( description );
+            return description.isSuite() || cm.isValid() && allocatedMethods.includes( cm.getMethod() );
+        }
+
+        @Override
+        public String describe()
+        {
+            return "allocated methods: " + allocatedMethods;
+        }
+    }
+
     private final class NullFilter
             extends TestResolverFilter
     {
@@ -0,0 +1,41 @@
+/**
+ * surefire-splitter-spi
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with surefire-splitter-spi. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.spi;
+
+/**
+ * Decides which chunk each test goes in.
+ * <p>
+ * Every chunk works out the allocation for itself, so strategies have to be deterministic: given the same durations
+ * and number of chunks, they must always come up with the same allocation.
+ */
+public interface AllocationStrategy extends Provider {
+
+    /**
+     * @return the name to select this strategy by (with the <code>surefire.allocationStrategy</code> system property)
+     */
+    String getName();
+
+    /**
+     * @param durations how long each test is expected to take in seconds, longest first
+     * @param totalChunks how many chunks to allocate the tests to
+     * @return the chunk to put each test in (from <code>0</code> to <code>totalChunks - 1</code>), in the same order
+     * as the durations
+     */
+    int[] allocate(double[] durations, int totalChunks);
+
+}
@@ -0,0 +1,73 @@
+/**
+ * surefire-splitter-spi
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with surefire-splitter-spi. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.spi;
+
+import com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestCase;
+import com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestSuite;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import static com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestCase.testCase;
+
+/**
+ * A compact binary form of a parsed JUnit report, for plugins that want to cache reports without having to parse
+ * the XML again.
+ */
+public class CompactReport {
+
+    /**
+     * Changes whenever the format changes, so that anything storing reports in this format can tell when its stored
+     * reports are out of date.
+     */
+    public static final int FORMAT_VERSION = 3;
+
+    public static void write(JunitTestSuite testSuite, DataOutput output) throws IOException {
+        output.writeUTF(testSuite.getName());
+        output.writeDouble(testSuite.getTime());
+        output.writeInt(testSuite.getFailures());
+        output.writeInt(testSuite.getCases().size());
+        for (JunitTestCase testCase : testSuite.getCases()) {
+            output.writeUTF(testCase.getName());
+            output.writeUTF(testCase.getClassName());
+            output.writeDouble(testCase.getTime());
+        }
+    }
+
+    public static JunitTestSuite read(DataInput input) throws IOException {
+        JunitTestSuite.Builder testSuite = JunitTestSuite.testSuite()
+                .withName(input.readUTF())
+                .withTime(input.readDouble())
+                .withFailures(input.readInt());
+        int numberOfCases = input.readInt();
+        for (int i = 0; i < numberOfCases; i++) {
+            testSuite.withTestCase(
+                    testCase()
+                            .withName(input.readUTF())
+                            .withClassName(input.readUTF())
+                            .withTime(input.readDouble())
+                            .build()
+            );
+        }
+        return testSuite.build();
+    }
+
+    private CompactReport() {
+    }
+}
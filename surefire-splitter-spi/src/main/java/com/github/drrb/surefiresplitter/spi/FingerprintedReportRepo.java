@@ -0,0 +1,34 @@
+/**
+ * surefire-splitter-spi
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with surefire-splitter-spi. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.spi;
+
+/**
+ * A {@link ReportRepo} that can tell whether its reports have changed without loading them.
+ * <p>
+ * This lets an allocation that's been worked out already (e.g. by another fork in the same build) be reused without
+ * loading the test history again.
+ */
+public interface FingerprintedReportRepo extends ReportRepo {
+
+    /**
+     * @return a string that's the same whenever {@link #getTestSuites()} would return the same reports, or
+     * <code>null</code> if that can't be worked out cheaply
+     */
+    String getFingerprint();
+
+}
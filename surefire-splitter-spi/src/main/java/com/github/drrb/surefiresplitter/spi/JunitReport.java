@@ -17,26 +17,31 @@
  */
 package com.github.drrb.surefiresplitter.spi;
 
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.NodeList;
-import org.xml.sax.SAXException;
-
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.LinkedList;
 import java.util.List;
 
 import static com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestCase.testCase;
 import static java.lang.Double.parseDouble;
+import static javax.xml.stream.XMLStreamConstants.DTD;
+import static javax.xml.stream.XMLStreamConstants.END_ELEMENT;
+import static javax.xml.stream.XMLStreamConstants.START_ELEMENT;
 
 public class JunitReport {
 
     public static class ReadFailure extends Exception {
         public ReadFailure(Path report, Throwable cause) {
+            this(String.valueOf(report), cause);
+        }
+
+        public ReadFailure(String report, Throwable cause) {
             super("Couldn't parse file as JUnit report '" + report + "'", cause);
         }
     }
@@ -48,6 +53,7 @@ public class JunitReport {
             private final List<JunitTestCase> testCases = new LinkedList<>();
             private String name;
             private double time;
+            private int failures;
 
             public Builder withName(String name) {
                 this.name = name;
@@ -59,13 +65,18 @@ public class JunitReport {
                 return this;
             }
 
+            public Builder withFailures(int failures) {
+                this.failures = failures;
+                return this;
+            }
+
             public Builder withTestCase(JunitTestCase testCase) {
                 this.testCases.add(testCase);
                 return this;
             }
 
             public JunitTestSuite build() {
-                return new JunitTestSuite(name, time, testCases);
+                return new JunitTestSuite(name, time, failures, testCases);
             }
         }
 
@@ -75,11 +86,17 @@ public class JunitReport {
 
         private final String name;
         private final double time;
+        private final int failures;
         private final List<JunitTestCase> cases;
 
         public JunitTestSuite(String name, Double time, List<JunitTestCase> cases) {
+            this(name, time, 0, cases);
+        }
+
+        public JunitTestSuite(String name, Double time, int failures, List<JunitTestCase> cases) {
             this.name = name;
             this.time = time;
+            this.failures = failures;
             this.cases = cases;
         }
 
@@ -91,6 +108,13 @@ public class JunitReport {
             return time;
         }
 
+        /**
+         * @return how many of the test cases failed or had errors (zero if the report didn't say)
+         */
+        public int getFailures() {
+            return failures;
+        }
+
         public List<JunitTestCase> getCases() {
             return cases;
         }
@@ -127,6 +151,8 @@ public class JunitReport {
 
             private String className;
 
+            private double time;
+
             public Builder withName(String name) {
                 this.name = name;
                 return this;
@@ -137,8 +163,13 @@ public class JunitReport {
                 return this;
             }
 
+            public Builder withTime(double time) {
+                this.time = time;
+                return this;
+            }
+
             public JunitTestCase build() {
-                return new JunitTestCase(name, className);
+                return new JunitTestCase(name, className, time);
             }
 
         }
@@ -149,10 +180,16 @@ public class JunitReport {
 
         private final String name;
         private final String className;
+        private final double time;
 
         public JunitTestCase(String name, String className) {
+            this(name, className, 0.0);
+        }
+
+        public JunitTestCase(String name, String className, double time) {
             this.name = name;
             this.className = className;
+            this.time = time;
         }
 
         public String getName() {
@@ -163,73 +200,129 @@ public class JunitReport {
             return className;
         }
 
+        /**
+         * @return how long the test case took, in seconds (zero if the report didn't say)
+         */
+        public double getTime() {
+            return time;
+        }
+
     }
 
+    private static final ThreadLocal<XMLInputFactory> XML_INPUT_FACTORY = new ThreadLocal<XMLInputFactory>() {
+        @Override
+        protected XMLInputFactory initialValue() {
+            return newXmlInputFactory();
+        }
+    };
+
+    /**
+     * Reads the first test suite in a JUnit XML report.
+     * <p>
+     * Reports are streamed rather than loaded into memory: we only look at the attributes of the
+     * <code>testsuite</code> and <code>testcase</code> elements, so captured output (e.g. in
+     * <code>system-out</code> elements) is skipped over without being kept, and nothing after the end of the test
+     * suite is read at all.
+     */
     public static JunitTestSuite parse(Path xml) throws ReadFailure {
-        try {
-            Document document = parseXml(xml);
-            Element suiteElement = getElementOrFail(document, "testsuite");
-
-            JunitTestSuite.Builder testSuite = JunitTestSuite.testSuite()
-                    .withName(getAttributeOrFail(suiteElement, "name"))
-                    .withTime(parseDouble(getAttributeOrFail(suiteElement, "time")));
-
-            NodeList caseElements = suiteElement.getElementsByTagName("testcase");
-            for (int i = 0; i < caseElements.getLength(); i++) {
-                Element caseElement = (Element) caseElements.item(i);
-                testSuite.withTestCase(
-                        testCase()
-                                .withName(getAttributeOrFail(caseElement, "name"))
-                                .withClassName(getAttributeOrFail(caseElement, "classname"))
-                                .build()
-                );
-            }
-
-            return testSuite.build();
-        } catch (ReadFailure e) {
-            throw e;
+        try (InputStream input = new BufferedInputStream(Files.newInputStream(xml))) {
+            return readTestSuite(input);
         } catch (Exception e) {
             throw new ReadFailure(xml, e);
         }
     }
 
-    private static Element getElementOrFail(Document document, String tagName) {
-        NodeList elements = document.getElementsByTagName(tagName);
-        Element element = (Element) elements.item(0);
-        if (element == null) {
-            throw new RuntimeException("No '" + tagName + "' element found");
+    /**
+     * Reads the first test suite in a JUnit XML report from a stream, in the same way as {@link #parse(Path)}.
+     * <p>
+     * The stream is left open, so that reports can be read one after the other out of an archive (e.g. a
+     * {@link java.util.zip.ZipInputStream}) without extracting them first.
+     *
+     * @param reportName where the report came from, for error messages
+     */
+    public static JunitTestSuite parse(InputStream xml, String reportName) throws ReadFailure {
+        try {
+            return readTestSuite(xml);
+        } catch (Exception e) {
+            throw new ReadFailure(reportName, e);
         }
-        return element;
     }
 
-    private static String getAttributeOrFail(Element element, String attribute) {
-        String value = element.getAttribute(attribute);
-        if (value == null) {
-            throw new RuntimeException("Couldn't get attribute '" + attribute + "' from element '" + element.getTagName() + "'");
+    private static JunitTestSuite readTestSuite(InputStream input) throws XMLStreamException {
+        // Closing the XML reader doesn't close the underlying stream
+        XMLStreamReader reader = XML_INPUT_FACTORY.get().createXMLStreamReader(input);
+        try {
+            return readTestSuite(reader);
+        } finally {
+            reader.close();
         }
-        return value;
     }
 
-    private static Document parseXml(Path file) throws ReadFailure {
-        DocumentBuilder documentBuilder = newDocumentBuilder();
-        try {
-            return documentBuilder.parse(file.toFile());
-        } catch (IOException | SAXException e) {
-            throw new ReadFailure(file, e);
+    private static JunitTestSuite readTestSuite(XMLStreamReader reader) throws XMLStreamException {
+        JunitTestSuite.Builder testSuite = null;
+        int depthInSuite = 0;
+        while (reader.hasNext()) {
+            switch (reader.next()) {
+                case DTD:
+                    throw new XMLStreamException("DOCTYPE declarations aren't allowed in JUnit reports", reader.getLocation());
+                case START_ELEMENT:
+                    if (testSuite == null) {
+                        if ("testsuite".equals(reader.getLocalName())) {
+                            testSuite = JunitTestSuite.testSuite()
+                                    .withName(getAttributeOrFail(reader, "name"))
+                                    .withTime(parseDouble(getAttributeOrFail(reader, "time")))
+                                    .withFailures(getCountAttribute(reader, "failures") + getCountAttribute(reader, "errors"));
+                            depthInSuite = 1;
+                        }
+                    } else {
+                        depthInSuite++;
+                        if ("testcase".equals(reader.getLocalName())) {
+                            testSuite.withTestCase(
+                                    testCase()
+                                            .withName(getAttributeOrFail(reader, "name"))
+                                            .withClassName(getAttributeOrFail(reader, "classname"))
+                                            .withTime(getTimeAttribute(reader))
+                                            .build()
+                            );
+                        }
+                    }
+                    break;
+                case END_ELEMENT:
+                    if (testSuite != null && --depthInSuite == 0) {
+                        return testSuite.build();
+                    }
+                    break;
+                default:
+                    // Text, comments, CDATA etc: skip over it
+            }
         }
+        throw new RuntimeException("No 'testsuite' element found");
     }
 
-    private static DocumentBuilder newDocumentBuilder() {
-        DocumentBuilderFactory documentBuilderFactory = DocumentBuilderFactory.newInstance();
-        try {
-            documentBuilderFactory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
-            documentBuilderFactory.setXIncludeAware(false);
-            documentBuilderFactory.setExpandEntityReferences(false);
-            documentBuilderFactory.setFeature("http://xml.org/sax/features/external-parameter-entities", false);
-            documentBuilderFactory.setFeature("http://xml.org/sax/features/external-general-entities", false);
-            return documentBuilderFactory.newDocumentBuilder();
-        } catch (ParserConfigurationException e) {
-            throw new RuntimeException(e);
+    private static String getAttributeOrFail(XMLStreamReader reader, String attribute) {
+        String value = reader.getAttributeValue(null, attribute);
+        if (value == null) {
+            throw new RuntimeException("Couldn't get attribute '" + attribute + "' from element '" + reader.getLocalName() + "'");
         }
+        return value;
+    }
+
+    private static double getTimeAttribute(XMLStreamReader reader) {
+        String value = reader.getAttributeValue(null, "time");
+        return value == null ? 0.0 : parseDouble(value);
+    }
+
+    private static int getCountAttribute(XMLStreamReader reader, String attribute) {
+        String value = reader.getAttributeValue(null, attribute);
+        return value == null ? 0 : Integer.parseInt(value);
+    }
+
+    private static XMLInputFactory newXmlInputFactory() {
+        XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_REPLACING_ENTITY_REFERENCES, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        return xmlInputFactory;
     }
 }
@@ -0,0 +1,35 @@
+/**
+ * surefire-splitter-spi
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with surefire-splitter-spi. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.spi;
+
+/**
+ * An {@link AllocationConfigProvider} that can tell which run of the build this is (e.g. from the pipeline and stage
+ * counters on a CI server).
+ * <p>
+ * This lets the chunks of a run recognise what they've shared with each other (e.g. a work queue), and tell it apart
+ * from what an earlier run left behind.
+ */
+public interface RunIdentifyingConfigProvider extends AllocationConfigProvider {
+
+    /**
+     * @return a string that's the same for every chunk in this run of the build, and different for every other run, or
+     * <code>null</code> if that can't be worked out
+     */
+    String getRunId();
+
+}
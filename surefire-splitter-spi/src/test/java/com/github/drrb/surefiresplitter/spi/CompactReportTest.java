@@ -0,0 +1,57 @@
+/**
+ * surefire-splitter-spi
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with surefire-splitter-spi. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.spi;
+
+import com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestSuite;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import static com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestCase.testCase;
+import static com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestSuite.testSuite;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class CompactReportTest {
+
+    @Test
+    public void shouldReadBackWhatItWrote() throws Exception {
+        JunitTestSuite original = testSuite()
+                .withName("com.example.FirstTest")
+                .withTime(1.25)
+                .withFailures(1)
+                .withTestCase(testCase().withName("first").withClassName("com.example.FirstTest").build())
+                .withTestCase(testCase().withName("second").withClassName("com.example.FirstTest").withTime(0.75).build())
+                .build();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        CompactReport.write(original, new DataOutputStream(bytes));
+        JunitTestSuite copy = CompactReport.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertThat(copy.getName(), is("com.example.FirstTest"));
+        assertThat(copy.getTime(), is(1.25));
+        assertThat(copy.getFailures(), is(1));
+        assertThat(copy.getCases().size(), is(2));
+        assertThat(copy.getCases().get(1).getName(), is("second"));
+        assertThat(copy.getCases().get(1).getClassName(), is("com.example.FirstTest"));
+        assertThat(copy.getCases().get(1).getTime(), is(0.75));
+    }
+}
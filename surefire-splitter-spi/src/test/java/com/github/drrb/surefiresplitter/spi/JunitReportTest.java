@@ -19,15 +19,29 @@ package com.github.drrb.surefiresplitter.spi;
 
 import com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestCase;
 import com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestSuite;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
 
 import static org.hamcrest.CoreMatchers.is;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.MatcherAssert.assertThat;
 
 public class JunitReportTest {
 
+    @Rule
+    public final TemporaryFolder tempDir = new TemporaryFolder();
+
     @Test
     public void shouldParseXmlFile() throws Exception {
         JunitTestSuite suite = JunitReport.parse(Paths.get("src/test/resources/com/github/drrb/surefiresplitter/spi/TEST-com.github.tlb.sampleprojects.CommutativeTest.xml"));
@@ -37,6 +51,82 @@ public class JunitReportTest {
         JunitTestCase testCase = suite.getCases().get(0);
         assertThat(testCase.getName(), is("shouldShowThatDivisionIsNotCommutative"));
         assertThat(testCase.getClassName(), is("com.github.tlb.sampleprojects.CommutativeTest"));
+        assertThat(testCase.getTime(), is(0.007));
+    }
+
+    @Test
+    public void shouldCountFailuresAndErrors() throws Exception {
+        Path report = report(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>",
+                "<testsuite name=\"com.example.BrokenTest\" time=\"1.5\" tests=\"3\" failures=\"1\" errors=\"1\">",
+                "  <testcase name=\"first\" classname=\"com.example.BrokenTest\" time=\"0.5\"><failure message=\"oops\"/></testcase>",
+                "  <testcase name=\"second\" classname=\"com.example.BrokenTest\" time=\"0.5\"><error message=\"oops\"/></testcase>",
+                "  <testcase name=\"third\" classname=\"com.example.BrokenTest\" time=\"0.5\"/>",
+                "</testsuite>"
+        );
+        assertThat(JunitReport.parse(report).getFailures(), is(2));
+        assertThat(JunitReport.parse(Paths.get("src/test/resources/com/github/drrb/surefiresplitter/spi/TEST-com.github.tlb.sampleprojects.CommutativeTest.xml")).getFailures(), is(0));
+    }
+
+    @Test
+    public void shouldSkipOverCapturedOutput() throws Exception {
+        Path report = report(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>",
+                "<testsuite name=\"com.example.NoisyTest\" time=\"1.5\">",
+                "  <testcase name=\"first\" classname=\"com.example.NoisyTest\" time=\"0.5\">",
+                "    <system-out><![CDATA[lots of output <testcase name=\"fake\"/>]]></system-out>",
+                "  </testcase>",
+                "  <testcase name=\"second\" classname=\"com.example.NoisyTest\" time=\"1.0\"/>",
+                "  <system-err>more output</system-err>",
+                "</testsuite>"
+        );
+        JunitTestSuite suite = JunitReport.parse(report);
+        assertThat(suite.getName(), is("com.example.NoisyTest"));
+        assertThat(suite.getTime(), is(1.5));
+        assertThat(suite.getCases().size(), is(2));
+        assertThat(suite.getCases().get(1).getName(), is("second"));
+    }
+
+    @Test
+    public void shouldReadReportsOneAfterTheOtherFromAStream() throws Exception {
+        ByteArrayOutputStream zipBytes = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(zipBytes)) {
+            zip.putNextEntry(new ZipEntry("TEST-com.example.FirstTest.xml"));
+            zip.write("<testsuite name=\"com.example.FirstTest\" time=\"1.5\"/>".getBytes(UTF_8));
+            zip.putNextEntry(new ZipEntry("TEST-com.example.SecondTest.xml"));
+            zip.write("<testsuite name=\"com.example.SecondTest\" time=\"2.5\"/>".getBytes(UTF_8));
+        }
+
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(zipBytes.toByteArray()))) {
+            zip.getNextEntry();
+            assertThat(JunitReport.parse(zip, "first").getName(), is("com.example.FirstTest"));
+            zip.getNextEntry();
+            assertThat(JunitReport.parse(zip, "second").getTime(), is(2.5));
+        }
+    }
+
+    @Test(expected = JunitReport.ReadFailure.class)
+    public void shouldRefuseReportsWithDoctypeDeclarations() throws Exception {
+        Path report = report(
+                "<?xml version=\"1.0\" encoding=\"UTF-8\"?>",
+                "<!DOCTYPE testsuite [<!ENTITY secret SYSTEM \"file:///etc/passwd\">]>",
+                "<testsuite name=\"&secret;\" time=\"1.5\"/>"
+        );
+        JunitReport.parse(report);
+    }
+
+    @Test(expected = JunitReport.ReadFailure.class)
+    public void shouldFailWhenThereIsNoTestSuite() throws Exception {
+        JunitReport.parse(report("<?xml version=\"1.0\" encoding=\"UTF-8\"?>", "<x></x>"));
     }
 
+    private Path report(String... lines) throws IOException {
+        StringBuilder xml = new StringBuilder();
+        for (String line : lines) {
+            xml.append(line).append("\n");
+        }
+        Path report = tempDir.newFile("TEST-report.xml").toPath();
+        Files.write(report, xml.toString().getBytes(UTF_8));
+        return report;
+    }
 }
@@ -17,9 +17,21 @@
  */
 package com.github.drrb.surefiresplitter;
 
+import com.github.drrb.surefiresplitter.allocation.AllocationCache;
+import com.github.drrb.surefiresplitter.allocation.ChunkOrder;
+import com.github.drrb.surefiresplitter.allocation.DurationEstimate;
+import com.github.drrb.surefiresplitter.allocation.GreedyAllocationStrategy;
+import com.github.drrb.surefiresplitter.allocation.WorkQueue;
 import com.github.drrb.surefiresplitter.spi.AllocationConfigProvider;
+import com.github.drrb.surefiresplitter.spi.AllocationStrategy;
 import com.github.drrb.surefiresplitter.spi.ReportRepo;
 import com.github.drrb.surefiresplitter.spi.ReportRepoProvider;
+import com.github.drrb.surefiresplitter.spi.RunIdentifyingConfigProvider;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedList;
+import java.util.List;
 
 public class AllocationConfig {
 
@@ -28,6 +40,17 @@ public class AllocationConfig {
         private int totalChunks;
         private int chunkNumber;
         private ReportRepo existingReports;
+        private AllocationCache allocationCache;
+        private boolean splitTestClasses;
+        private WorkQueue workQueue;
+        private AllocationStrategy allocationStrategy = new GreedyAllocationStrategy();
+        private DurationEstimate durationEstimate = DurationEstimate.FIRST;
+        private Path allocationPlan;
+        private Path exportedAllocationPlan;
+        private boolean onlyExportingAllocationPlan;
+        private Path accuracyReportDir;
+        private ChunkOrder chunkOrder = ChunkOrder.ALLOCATED;
+        private boolean prefetchingHistory = true;
 
         public Builder withoutSplitTests() {
             this.splitTests = false;
@@ -58,6 +81,61 @@ public class AllocationConfig {
             return withExistingReports(new MemoryReportRepo());
         }
 
+        public Builder withAllocationCache(AllocationCache allocationCache) {
+            this.allocationCache = allocationCache;
+            return this;
+        }
+
+        public Builder withSplitTestClasses() {
+            this.splitTestClasses = true;
+            return this;
+        }
+
+        public Builder withWorkQueue(WorkQueue workQueue) {
+            this.workQueue = workQueue;
+            return this;
+        }
+
+        public Builder withAllocationStrategy(AllocationStrategy allocationStrategy) {
+            this.allocationStrategy = allocationStrategy;
+            return this;
+        }
+
+        public Builder withDurationEstimate(DurationEstimate durationEstimate) {
+            this.durationEstimate = durationEstimate;
+            return this;
+        }
+
+        public Builder withAllocationPlan(Path allocationPlan) {
+            this.allocationPlan = allocationPlan;
+            return this;
+        }
+
+        public Builder withExportedAllocationPlan(Path exportedAllocationPlan) {
+            this.exportedAllocationPlan = exportedAllocationPlan;
+            return this;
+        }
+
+        public Builder withOnlyExportingAllocationPlan(boolean onlyExportingAllocationPlan) {
+            this.onlyExportingAllocationPlan = onlyExportingAllocationPlan;
+            return this;
+        }
+
+        public Builder withAccuracyReportDir(Path accuracyReportDir) {
+            this.accuracyReportDir = accuracyReportDir;
+            return this;
+        }
+
+        public Builder withChunkOrder(ChunkOrder chunkOrder) {
+            this.chunkOrder = chunkOrder;
+            return this;
+        }
+
+        public Builder withPrefetchingHistory(boolean prefetchingHistory) {
+            this.prefetchingHistory = prefetchingHistory;
+            return this;
+        }
+
         public AllocationConfig chunk(int chunkNumber, int totalChunks) {
             return withSplitTests()
                     .withChunkNumber(chunkNumber)
@@ -66,7 +144,7 @@ public class AllocationConfig {
         }
 
         public AllocationConfig build() {
-            return new AllocationConfig(splitTests, chunkNumber, totalChunks, existingReports);
+            return new AllocationConfig(splitTests, chunkNumber, totalChunks, existingReports, allocationCache, splitTestClasses, workQueue, allocationStrategy, durationEstimate, allocationPlan, exportedAllocationPlan, onlyExportingAllocationPlan, accuracyReportDir, chunkOrder, prefetchingHistory);
         }
     }
 
@@ -83,6 +161,7 @@ public class AllocationConfig {
                 .withoutSplitTests()
                 .withNoExistingReports();
 
+        String runId = System.getProperty("surefire.runId");
         //TODO: should we order these by priority? (e.g. with a getPriority() method on the provider interface)
         for (AllocationConfigProvider configProvider : serviceLookup.getAllocationConfigProviders()) {
             if (configProvider.isAvailable()) {
@@ -97,6 +176,9 @@ public class AllocationConfig {
                 if (chunkNumber < 1 || chunkNumber > totalChunks) {
                     throw new RuntimeException("Expected chunk number to be between 1 and " + totalChunks + ", but it was " + chunkNumber);
                 }
+                if (runId == null && configProvider instanceof RunIdentifyingConfigProvider) {
+                    runId = ((RunIdentifyingConfigProvider) configProvider).getRunId();
+                }
                 break;
             }
         }
@@ -109,6 +191,42 @@ public class AllocationConfig {
         }
         config.withExistingReports(existingReports);
 
+        if (!"false".equals(System.getProperty("surefire.allocationCache"))) {
+            config.withAllocationCache(AllocationCache.in(getDir("surefire.allocationCacheDir")));
+        }
+
+        if (Boolean.getBoolean("surefire.splitTestClasses")) {
+            config.withSplitTestClasses();
+        }
+
+        config.withAllocationStrategy(getAllocationStrategy(serviceLookup, System.getProperty("surefire.allocationStrategy", GreedyAllocationStrategy.NAME)));
+
+        config.withDurationEstimate(DurationEstimate.named(System.getProperty("surefire.durationEstimate", DurationEstimate.FIRST.toString())));
+
+        config.withChunkOrder(ChunkOrder.named(System.getProperty("surefire.chunkOrder", ChunkOrder.ALLOCATED.toString())));
+
+        String allocationPlanFile = System.getProperty("surefire.allocationPlan");
+        if (allocationPlanFile != null) {
+            config.withAllocationPlan(Paths.get(allocationPlanFile));
+        }
+
+        String exportedAllocationPlanFile = System.getProperty("surefire.exportAllocationPlan");
+        if (exportedAllocationPlanFile != null) {
+            config.withExportedAllocationPlan(Paths.get(exportedAllocationPlanFile));
+            config.withOnlyExportingAllocationPlan(Boolean.getBoolean("surefire.exportAllocationPlanOnly"));
+        }
+
+        if (Boolean.getBoolean("surefire.accuracyReport") || System.getProperty("surefire.accuracyReportDir") != null) {
+            config.withAccuracyReportDir(getDir("surefire.accuracyReportDir"));
+        }
+
+        config.withPrefetchingHistory(!"false".equals(System.getProperty("surefire.prefetchHistory")));
+
+        String workQueueFile = System.getProperty("surefire.workQueue");
+        if (workQueueFile != null) {
+            config.withWorkQueue(WorkQueue.in(Paths.get(workQueueFile), runId));
+        }
+
         return config.build();
     }
 
@@ -116,12 +234,60 @@ public class AllocationConfig {
     private final int chunkNumber;
     private final int totalChunks;
     private final ReportRepo existingReports;
+    private final AllocationCache allocationCache;
+    private final boolean splitTestClasses;
+    private final WorkQueue workQueue;
+    private final AllocationStrategy allocationStrategy;
+    private final DurationEstimate durationEstimate;
+    private final Path allocationPlan;
+    private final Path exportedAllocationPlan;
+    private final boolean onlyExportingAllocationPlan;
+    private final Path accuracyReportDir;
+    private final ChunkOrder chunkOrder;
+    private final boolean prefetchingHistory;
 
-    private AllocationConfig(boolean splitTests, int chunkNumber, int totalChunks, ReportRepo existingReports) {
+    private AllocationConfig(boolean splitTests, int chunkNumber, int totalChunks, ReportRepo existingReports, AllocationCache allocationCache, boolean splitTestClasses, WorkQueue workQueue, AllocationStrategy allocationStrategy, DurationEstimate durationEstimate, Path allocationPlan, Path exportedAllocationPlan, boolean onlyExportingAllocationPlan, Path accuracyReportDir, ChunkOrder chunkOrder, boolean prefetchingHistory) {
         this.splitTests = splitTests;
         this.chunkNumber = chunkNumber;
         this.totalChunks = totalChunks;
         this.existingReports = existingReports;
+        this.allocationCache = allocationCache;
+        this.splitTestClasses = splitTestClasses;
+        this.workQueue = workQueue;
+        this.allocationStrategy = allocationStrategy;
+        this.durationEstimate = durationEstimate;
+        this.allocationPlan = allocationPlan;
+        this.exportedAllocationPlan = exportedAllocationPlan;
+        this.onlyExportingAllocationPlan = onlyExportingAllocationPlan;
+        this.accuracyReportDir = accuracyReportDir;
+        this.chunkOrder = chunkOrder;
+        this.prefetchingHistory = prefetchingHistory;
+    }
+
+    /**
+     * The directory named by a system property, or by default <code>target/surefire-splitter</code> in the module
+     * being tested. Surefire sets the module's base directory, which isn't necessarily the working directory (e.g. in a
+     * multi-module build).
+     */
+    private static Path getDir(String propertyName) {
+        String dir = System.getProperty(propertyName);
+        if (dir == null) {
+            return Paths.get(System.getProperty("basedir", ""), "target", "surefire-splitter");
+        }
+        return Paths.get(dir);
+    }
+
+    private static AllocationStrategy getAllocationStrategy(ServiceLookup serviceLookup, String name) {
+        List<String> availableNames = new LinkedList<>();
+        for (AllocationStrategy allocationStrategy : serviceLookup.getAllocationStrategies()) {
+            if (allocationStrategy.isAvailable()) {
+                if (allocationStrategy.getName().equals(name)) {
+                    return allocationStrategy;
+                }
+                availableNames.add(allocationStrategy.getName());
+            }
+        }
+        throw new RuntimeException("Expected allocation strategy to be one of " + availableNames + ", but it was '" + name + "'");
     }
 
     public boolean isSplitTests() {
@@ -139,4 +305,84 @@ public class AllocationConfig {
     public ReportRepo getExistingReports() {
         return existingReports;
     }
+
+    /**
+     * @return where to share allocations with other JVMs in the same build, or <code>null</code> if they shouldn't be
+     * shared
+     */
+    public AllocationCache getAllocationCache() {
+        return allocationCache;
+    }
+
+    /**
+     * @return whether test classes that would take longer than a chunk should be split between chunks by method
+     */
+    public boolean isSplitTestClasses() {
+        return splitTestClasses;
+    }
+
+    /**
+     * @return a queue to take tests from, shared with the other chunks, or <code>null</code> if tests should be
+     * allocated to chunks up front
+     */
+    public WorkQueue getWorkQueue() {
+        return workQueue;
+    }
+
+    public AllocationStrategy getAllocationStrategy() {
+        return allocationStrategy;
+    }
+
+    /**
+     * @return how to estimate each test's duration when it appears in more than one old run
+     */
+    public DurationEstimate getDurationEstimate() {
+        return durationEstimate;
+    }
+
+    /**
+     * @return a plan to take the allocation from instead of working it out, or <code>null</code> if it should be
+     * worked out
+     */
+    public Path getAllocationPlan() {
+        return allocationPlan;
+    }
+
+    /**
+     * @return where to save the plan once it's been worked out, or <code>null</code> if it shouldn't be saved
+     */
+    public Path getExportedAllocationPlan() {
+        return exportedAllocationPlan;
+    }
+
+    /**
+     * @return whether to only work out and save the plan, without running any tests (e.g. in an earlier stage of the
+     * build that the plan is published from)
+     */
+    public boolean isOnlyExportingAllocationPlan() {
+        return exportedAllocationPlan != null && onlyExportingAllocationPlan;
+    }
+
+    /**
+     * @return where to save reports of how accurately the tests' durations were predicted, or <code>null</code> if they
+     * shouldn't be saved
+     */
+    public Path getAccuracyReportDir() {
+        return accuracyReportDir;
+    }
+
+    /**
+     * @return the order to run the tests in this chunk in
+     */
+    public ChunkOrder getChunkOrder() {
+        return chunkOrder;
+    }
+
+    /**
+     * @return whether the test history should start loading in the background as soon as the provider starts, instead
+     * of when the tests are allocated
+     */
+    public boolean isPrefetchingHistory() {
+        return prefetchingHistory;
+    }
 }
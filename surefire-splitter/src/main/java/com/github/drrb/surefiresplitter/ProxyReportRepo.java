@@ -17,13 +17,14 @@
  */
 package com.github.drrb.surefiresplitter;
 
+import com.github.drrb.surefiresplitter.spi.FingerprintedReportRepo;
 import com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestSuite;
 import com.github.drrb.surefiresplitter.spi.ReportRepo;
 
 import java.util.LinkedList;
 import java.util.List;
 
-public class ProxyReportRepo implements ReportRepo {
+public class ProxyReportRepo implements FingerprintedReportRepo {
     private final List<ReportRepo> delegates = new LinkedList<>();
 
     public void addDelegate(ReportRepo delegate) {
@@ -38,4 +39,20 @@ public class ProxyReportRepo implements ReportRepo {
         }
         return allSuites;
     }
+
+    /**
+     * @return the fingerprints of all of the delegates, or <code>null</code> if any of them can't provide one
+     */
+    @Override
+    public String getFingerprint() {
+        StringBuilder fingerprint = new StringBuilder();
+        for (ReportRepo delegate : delegates) {
+            String delegateFingerprint = delegate instanceof FingerprintedReportRepo ? ((FingerprintedReportRepo) delegate).getFingerprint() : null;
+            if (delegateFingerprint == null) {
+                return null;
+            }
+            fingerprint.append(delegate.getClass().getName()).append(": ").append(delegateFingerprint).append('\n');
+        }
+        return fingerprint.toString();
+    }
 }
@@ -17,7 +17,10 @@
  */
 package com.github.drrb.surefiresplitter;
 
+import com.github.drrb.surefiresplitter.allocation.BalancedAllocationStrategy;
+import com.github.drrb.surefiresplitter.allocation.GreedyAllocationStrategy;
 import com.github.drrb.surefiresplitter.spi.AllocationConfigProvider;
+import com.github.drrb.surefiresplitter.spi.AllocationStrategy;
 import com.github.drrb.surefiresplitter.spi.Provider;
 import com.github.drrb.surefiresplitter.spi.ReportRepoProvider;
 
@@ -40,6 +43,10 @@ public class ServiceLookup {
         return lookUp("Surefire Splitter report history plugins", ReportRepoProvider.class);
     }
 
+    public List<AllocationStrategy> getAllocationStrategies() {
+        return lookUp("Surefire Splitter allocation strategies", AllocationStrategy.class, Arrays.<AllocationStrategy>asList(new GreedyAllocationStrategy(), new BalancedAllocationStrategy()));
+    }
+
     private <T extends Provider> List<T> lookUp(String description, Class<T> providerType, T defaultProvider) {
         return lookUp(description, providerType, Collections.singletonList(defaultProvider));
     }
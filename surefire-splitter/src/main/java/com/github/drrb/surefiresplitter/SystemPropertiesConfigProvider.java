@@ -17,9 +17,9 @@
  */
 package com.github.drrb.surefiresplitter;
 
-import com.github.drrb.surefiresplitter.spi.AllocationConfigProvider;
+import com.github.drrb.surefiresplitter.spi.RunIdentifyingConfigProvider;
 
-public class SystemPropertiesConfigProvider implements AllocationConfigProvider {
+public class SystemPropertiesConfigProvider implements RunIdentifyingConfigProvider {
 
     public boolean isAvailable() {
         return getChunkNumber() != null && getTotalChunks() != null;
@@ -33,6 +33,10 @@ public class SystemPropertiesConfigProvider implements AllocationConfigProvider
         return Integer.getInteger("surefire.totalChunks");
     }
 
+    public String getRunId() {
+        return System.getProperty("surefire.runId");
+    }
+
     public String getDescription() {
         if (isAvailable()) {
             return "System Properties splitter plugin : chunk " + getChunkNumber() + " of " + getTotalChunks();
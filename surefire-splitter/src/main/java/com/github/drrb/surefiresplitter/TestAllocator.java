@@ -17,15 +17,35 @@
  */
 package com.github.drrb.surefiresplitter;
 
+import com.github.drrb.surefiresplitter.allocation.AccuracyReport;
+import com.github.drrb.surefiresplitter.allocation.Allocation;
+import com.github.drrb.surefiresplitter.allocation.AllocationCache;
+import com.github.drrb.surefiresplitter.allocation.AllocationPlan;
+import com.github.drrb.surefiresplitter.allocation.ChunkOrder;
 import com.github.drrb.surefiresplitter.allocation.Chunk;
 import com.github.drrb.surefiresplitter.allocation.Chunks;
+import com.github.drrb.surefiresplitter.allocation.DurationIndex;
 import com.github.drrb.surefiresplitter.allocation.TimedTest;
-import com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestSuite;
+import com.github.drrb.surefiresplitter.allocation.UnseenTestEstimator;
+import com.github.drrb.surefiresplitter.allocation.WorkQueue;
+import com.github.drrb.surefiresplitter.spi.FingerprintedReportRepo;
 import com.github.drrb.surefiresplitter.spi.ReportRepo;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import static com.github.drrb.surefiresplitter.util.Pluralizer.pluralize;
 
@@ -39,40 +59,253 @@ public class TestAllocator {
 
     private final AllocationConfig config;
     private final ReportRepo existingReports;
+    private DurationIndex oldRuns;
+    private Future<DurationIndex> oldRunsInBackground;
+    private AllocationPlan plan;
 
     public TestAllocator(AllocationConfig config) {
         this.config = config;
         this.existingReports = config.getExistingReports();
     }
 
-    public Iterable<Class<?>> allocate(Iterable<Class<?>> testsToRun) {
+    /**
+     * Starts loading the test history on another thread, so that downloading and parsing the reports can get going
+     * while the test classes are being scanned. Allocating the tests then waits for it to finish instead of loading it
+     * again. Does nothing if the history might not be needed (e.g. when taking the allocation from a plan, or when
+     * another JVM has already saved an allocation for the same history in the allocation cache).
+     */
+    public synchronized void loadHistoryInBackground() {
+        if (!config.isSplitTests() || !config.isPrefetchingHistory() || oldRuns != null || oldRunsInBackground != null) {
+            return;
+        }
+        if (config.getAllocationPlan() != null || isAllocationProbablyCached()) {
+            return;
+        }
+        FutureTask<DurationIndex> history = new FutureTask<>(new Callable<DurationIndex>() {
+            @Override
+            public DurationIndex call() {
+                return loadOldRuns();
+            }
+        });
+        Thread loader = new Thread(history, "surefire-splitter-history-loader");
+        loader.setDaemon(true);
+        loader.start();
+        oldRunsInBackground = history;
+    }
+
+    public Allocation allocate(Iterable<Class<?>> testsToRun) {
         if (!config.isSplitTests()) {
             System.out.println("No chunk number specified: running all tests");
-            return testsToRun;
+            return Allocation.allOf(testsToRun);
+        }
+
+        plan = planAllocation(testsToRun);
+        if (config.isOnlyExportingAllocationPlan()) {
+            System.out.println(String.format("Only exporting the allocation plan to '%s': not running any tests", config.getExportedAllocationPlan()));
+            return Allocation.of(Collections.<TimedTest>emptyList());
+        }
+        List<TimedTest> chunk = new ArrayList<>(plan.getTests(config.getChunkNumber()));
+        ChunkOrder chunkOrder = config.getChunkOrder();
+        chunkOrder.sort(chunk, chunkOrder.usesHistory() ? getOldRuns() : null);
+        return Allocation.of(chunk);
+    }
+
+    /**
+     * Compares how long this chunk's tests took with how long they were expected to take when they were allocated,
+     * and saves the comparison (unless that's turned off).
+     *
+     * @param actualSeconds how long each test class took, by name
+     */
+    public void reportAccuracy(Map<String, Double> actualSeconds) {
+        Path reportDir = config.getAccuracyReportDir();
+        if (plan == null || reportDir == null || config.isOnlyExportingAllocationPlan()) {
+            return;
+        }
+        Path reportFile = reportDir.resolve(String.format("accuracy-chunk-%d-of-%d.json", config.getChunkNumber(), config.getTotalChunks()));
+        try {
+            AccuracyReport.of(plan, config.getChunkNumber(), actualSeconds).save(reportFile);
+        } catch (IOException e) {
+            System.out.println(String.format("Couldn't save allocation accuracy report to '%s' (%s)", reportFile, e));
+        }
+    }
+
+    private AllocationPlan planAllocation(Iterable<Class<?>> testsToRun) {
+        Path planFile = config.getAllocationPlan();
+        AllocationPlan plan = planFile == null ? null : loadPlan(testsToRun, planFile);
+        if (plan != null) {
+            return plan;
+        }
+
+        AllocationCache allocationCache = config.getAllocationCache();
+        String historyFingerprint = allocationCache == null ? null : getHistoryFingerprint();
+        if (historyFingerprint == null) {
+            plan = allocateChunks(testsToRun);
+        } else {
+            plan = allocateUsingCache(testsToRun, allocationCache, historyFingerprint);
+        }
+        if (config.getExportedAllocationPlan() != null) {
+            exportPlan(plan, config.getExportedAllocationPlan());
+        }
+        return plan;
+    }
+
+    /**
+     * Takes the allocation from a plan worked out beforehand (e.g. by an earlier stage of the build), so that we don't
+     * need to load the test history at all.
+     */
+    private AllocationPlan loadPlan(Iterable<Class<?>> testsToRun, Path planFile) {
+        try {
+            AllocationPlan plan = AllocationPlan.load(planFile, testsToRun);
+            if (plan == null) {
+                System.out.println(String.format("Allocation plan '%s' is for a different set of tests: working out the allocation instead", planFile));
+            } else if (plan.getTotalChunks() != config.getTotalChunks()) {
+                System.out.println(String.format("Allocation plan '%s' is for %s, not %d: working out the allocation instead", planFile, pluralize("chunk", plan.getTotalChunks()), config.getTotalChunks()));
+            } else {
+                System.out.println(String.format("%s (using the allocation plan in '%s')", getMainMessage(), planFile));
+                return plan;
+            }
+        } catch (IOException e) {
+            System.out.println(String.format("Couldn't read allocation plan '%s': working out the allocation instead (%s)", planFile, e));
+        }
+        return null;
+    }
+
+    private void exportPlan(AllocationPlan plan, Path planFile) {
+        try {
+            plan.save(planFile);
+        } catch (IOException e) {
+            System.out.println(String.format("Couldn't save allocation plan to '%s' (%s)", planFile, e));
         }
+    }
 
-        int chunkNumber = config.getChunkNumber();
-        int totalChunks = config.getTotalChunks();
+    public boolean isUsingWorkQueue() {
+        return config.isSplitTests() && config.getWorkQueue() != null && !config.isOnlyExportingAllocationPlan();
+    }
 
-        System.out.println(getRunningMessage(testsToRun));
+    /**
+     * Instead of allocating tests to this chunk up front, takes them one at a time (as they're iterated over) from the
+     * queue shared with the other chunks, longest first.
+     *
+     * @return the tests from the queue (none, if the other chunks in this run have already taken them all), or
+     * <code>null</code> if the queue can't be used, in which case the tests should be allocated up front with
+     * {@link #allocate(Iterable)} instead
+     */
+    public Iterable<Class<?>> takeFromWorkQueue(Iterable<Class<?>> testsToRun) {
+        final WorkQueue workQueue = config.getWorkQueue();
+        final Map<String, Class<?>> testsByName = new HashMap<>();
+        List<String> orderedTestNames = new ArrayList<>();
+        for (TimedTest test : order(testsToRun)) {
+            testsByName.put(test.getTestClass().getName(), test.getTestClass());
+            orderedTestNames.add(test.getTestClass().getName());
+        }
+        try {
+            if (!workQueue.join(orderedTestNames)) {
+                System.out.println(String.format("Work queue '%s' is for a different set of tests, or has already been used up by an unknown run: allocating tests up front instead", workQueue.getFile()));
+                return null;
+            }
+        } catch (IOException e) {
+            System.out.println(String.format("Couldn't join work queue '%s': allocating tests up front instead (%s)", workQueue.getFile(), e));
+            return null;
+        }
+        System.out.println(String.format("Running tests from work queue '%s' (shared with the other chunks)", workQueue.getFile()));
+        return new Iterable<Class<?>>() {
+            @Override
+            public Iterator<Class<?>> iterator() {
+                return new WorkQueueIterator(workQueue, testsByName);
+            }
+        };
+    }
+
+    /**
+     * Reuses the allocation if another JVM in this build has already worked it out (e.g. another of Surefire's forks),
+     * so that we don't need to load the test history again.
+     */
+    private AllocationPlan allocateUsingCache(Iterable<Class<?>> testsToRun, AllocationCache allocationCache, String historyFingerprint) {
+        AllocationCache.Key key = allocationCache.key(testsToRun, historyFingerprint, config.getTotalChunks(), getAllocationSettings());
+        AllocationCache.Lock lock;
+        try {
+            lock = allocationCache.lock(key);
+        } catch (IOException e) {
+            System.out.println("Couldn't lock the allocation cache: working out the allocation without it (" + e + ")");
+            return allocateChunks(testsToRun);
+        }
+        try {
+            AllocationPlan cachedPlan = allocationCache.load(key, testsToRun);
+            if (cachedPlan != null) {
+                System.out.println(String.format("%s (using the allocation saved in '%s')", getMainMessage(), allocationCache.getFile(key)));
+                return cachedPlan;
+            }
+            AllocationPlan plan = allocateChunks(testsToRun);
+            allocationCache.save(key, plan);
+            return plan;
+        } finally {
+            lock.release();
+        }
+    }
 
+    private AllocationPlan allocateChunks(Iterable<Class<?>> testsToRun) {
         SortedSet<TimedTest> orderedTests = order(testsToRun);
-        Chunks chunks = chunk(orderedTests, totalChunks);
-        return chunks.get(chunkNumber).getTests();
+        Future<Integer> suggestedNumberOfChunks = suggestNumberOfChunksInBackground(orderedTests);
+        Chunks chunks = chunk(config.isSplitTestClasses() ? splitLongTests(orderedTests, config.getTotalChunks()) : orderedTests, config.getTotalChunks());
+
+        System.out.println(getRunningMessage(suggestedNumberOfChunks));
+        return AllocationPlan.of(chunks, config.getTotalChunks());
+    }
+
+    /**
+     * Splits test classes that would take longer on their own than a chunk should take (i.e. longer than the total
+     * duration divided by the number of chunks) into parts by method, so that they don't hold up the whole build.
+     */
+    private SortedSet<TimedTest> splitLongTests(SortedSet<TimedTest> orderedTests, int totalChunks) {
+        double totalDuration = 0.0;
+        for (TimedTest test : orderedTests) {
+            totalDuration += test.getDuration().getSeconds();
+        }
+        double chunkDuration = totalDuration / totalChunks;
+        SortedSet<TimedTest> splitTests = new TreeSet<>();
+        for (TimedTest test : orderedTests) {
+            double testDuration = test.getDuration().getSeconds();
+            if (test.getDuration().isUnknown() || testDuration <= chunkDuration) {
+                splitTests.add(test);
+            } else {
+                int parts = Math.min(totalChunks, (int) Math.ceil(testDuration / chunkDuration));
+                splitTests.addAll(test.splitByMethod(parts, getOldRuns().getTestCases(test.getTestClass().getName())));
+            }
+        }
+        return splitTests;
+    }
+
+    private boolean isAllocationProbablyCached() {
+        if (config.getAllocationCache() == null || isUsingWorkQueue()) {
+            return false;
+        }
+        String historyFingerprint = getHistoryFingerprint();
+        return historyFingerprint != null && config.getAllocationCache().hasAllocationsFor(historyFingerprint, config.getTotalChunks(), getAllocationSettings());
+    }
+
+    private String getAllocationSettings() {
+        return "splitTestClasses=" + config.isSplitTestClasses() + ",allocationStrategy=" + config.getAllocationStrategy().getName() + ",durationEstimate=" + config.getDurationEstimate();
     }
 
-    private String getRunningMessage(Iterable<Class<?>> testsToRun) {
-        final String mainMessage;
+    private String getHistoryFingerprint() {
+        return existingReports instanceof FingerprintedReportRepo ? ((FingerprintedReportRepo) existingReports).getFingerprint() : null;
+    }
+
+    private String getMainMessage() {
         if (config.getTotalChunks() == 1) {
-            mainMessage = "Running all tests";
+            return "Running all tests";
         } else {
-            mainMessage = String.format("Running tests from chunk %d of %d", config.getChunkNumber(), config.getTotalChunks());
+            return String.format("Running tests from chunk %d of %d", config.getChunkNumber(), config.getTotalChunks());
         }
+    }
+
+    private String getRunningMessage(Future<Integer> suggestion) {
+        final String mainMessage = getMainMessage();
 
         try {
-            final int suggestedNumberOfChunks = suggestedNumberOfChunks(testsToRun);
+            final int suggestedNumberOfChunks = waitFor(suggestion);
 
-            if (config.getExistingReports().getTestSuites().isEmpty()) {
+            if (getOldRuns().isEmpty()) {
                 return String.format("%s (not sure how many chunks you'd ideally have: I couldn't find any previous reports!)", mainMessage);
             } else if (suggestedNumberOfChunks == config.getTotalChunks()) {
                 return mainMessage;
@@ -88,36 +321,200 @@ public class TestAllocator {
 
     private SortedSet<TimedTest> order(Iterable<Class<?>> testsToRun) {
         SortedSet<TimedTest> ordered = new TreeSet<>();
-        List<JunitTestSuite> oldRuns = existingReports.getTestSuites();
+        List<Class<?>> unseenTests = new ArrayList<>();
+        DurationIndex oldRuns = getOldRuns();
         for (Class<?> testClass : testsToRun) {
-            ordered.add(TimedTest.from(testClass, oldRuns));
+            TimedTest test = TimedTest.from(testClass, oldRuns);
+            if (test.getDuration().isUnknown()) {
+                unseenTests.add(testClass);
+            } else {
+                ordered.add(test);
+            }
+        }
+        if (!unseenTests.isEmpty()) {
+            // Otherwise new tests all look the same (very short), so they'd all be piled into the same chunk
+            UnseenTestEstimator estimator = new UnseenTestEstimator(ordered);
+            for (Class<?> testClass : unseenTests) {
+                ordered.add(new TimedTest(testClass, estimator.estimate(testClass)));
+            }
         }
         return ordered;
     }
 
+    private synchronized DurationIndex getOldRuns() {
+        if (oldRuns == null) {
+            oldRuns = oldRunsInBackground == null ? loadOldRuns() : waitForHistory(oldRunsInBackground);
+            oldRunsInBackground = null;
+        }
+        return oldRuns;
+    }
+
+    private DurationIndex loadOldRuns() {
+        return DurationIndex.of(existingReports.getTestSuites(), config.getDurationEstimate());
+    }
+
     private Chunks chunk(SortedSet<TimedTest> orderedTests, int totalChunks) {
+        List<TimedTest> tests = new ArrayList<>(orderedTests);
+        double[] durations = new double[tests.size()];
+        for (int i = 0; i < durations.length; i++) {
+            durations[i] = tests.get(i).getDuration().getSeconds();
+        }
+        int[] allocation = config.getAllocationStrategy().allocate(durations, totalChunks);
         Chunks chunks = new Chunks(totalChunks);
-        for (TimedTest suite : orderedTests) {
-            chunks.getShortest().addTestSuite(suite);
+        for (int i = 0; i < allocation.length; i++) {
+            chunks.getByIndex(allocation[i]).addTestSuite(tests.get(i));
         }
         return chunks;
     }
 
+    private static class WorkQueueIterator implements Iterator<Class<?>> {
+        private final WorkQueue workQueue;
+        private final Map<String, Class<?>> testsByName;
+        private Class<?> next;
+        private boolean finished;
+
+        WorkQueueIterator(WorkQueue workQueue, Map<String, Class<?>> testsByName) {
+            this.workQueue = workQueue;
+            this.testsByName = testsByName;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (next == null && !finished) {
+                String testName = takeNext();
+                if (testName == null) {
+                    finished = true;
+                } else {
+                    next = testsByName.get(testName);
+                }
+            }
+            return next != null;
+        }
+
+        @Override
+        public Class<?> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Class<?> test = next;
+            next = null;
+            return test;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        private String takeNext() {
+            try {
+                return workQueue.take();
+            } catch (IOException e) {
+                throw new RuntimeException("Couldn't take the next test from work queue '" + workQueue.getFile() + "'", e);
+            }
+        }
+    }
+
     public int suggestedNumberOfChunks(Iterable<Class<?>> tests) throws UnableToSuggestTotalChunks {
-        SortedSet<TimedTest> orderedTests = order(tests);
+        return suggestedNumberOfChunks(order(tests));
+    }
+
+    /**
+     * Finds the smallest number of chunks for which the longest chunk contains just one test (i.e. adding more chunks
+     * wouldn't make the build any faster, because it's already as slow as the slowest test).
+     * <p>
+     * Adding chunks never makes that less true, so rather than packing the tests for every possible number of chunks,
+     * we binary search between a lower bound (the total duration divided by the duration of the longest test: you can't
+     * fit the tests into fewer chunks than that without one of them being longer than the longest test) and the number
+     * of tests (at which point every chunk has at most one test).
+     */
+    private int suggestedNumberOfChunks(SortedSet<TimedTest> orderedTests) throws UnableToSuggestTotalChunks {
         for (TimedTest test : orderedTests) {
             if (test.getDuration().isUnknown()) {
                 throw UnableToSuggestTotalChunks.someTestsHaveNotBeenRunBefore();
             }
         }
-        for (int totalChunks = 1; totalChunks < MAX_SUGGESTED_CHUNKS; totalChunks++) {
-            Chunks chunks = chunk(orderedTests, totalChunks);
-            Chunk longestChunk = chunks.getLongest();
-            if (longestChunk.size() == 1) { // Total runtime is the time taken by the longest test
-                return totalChunks;
+        int low = lowerBoundForNumberOfChunks(orderedTests);
+        int high = Math.min(orderedTests.size(), MAX_SUGGESTED_CHUNKS - 1);
+        if (low > high || !longestChunkHasOneTest(orderedTests, high)) {
+            throw UnableToSuggestTotalChunks.requiresMoreChunksThan(MAX_SUGGESTED_CHUNKS);
+        }
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (longestChunkHasOneTest(orderedTests, middle)) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return high;
+    }
+
+    private static int lowerBoundForNumberOfChunks(SortedSet<TimedTest> orderedTests) {
+        if (orderedTests.isEmpty()) {
+            return 1;
+        }
+        double longestTest = orderedTests.first().getDuration().getSeconds();
+        double totalDuration = 0.0;
+        for (TimedTest test : orderedTests) {
+            totalDuration += test.getDuration().getSeconds();
+        }
+        if (longestTest <= 0.0) {
+            return 1;
+        }
+        // Back off by one so that rounding errors in the total don't make us skip past the answer
+        return Math.max(1, (int) Math.ceil(totalDuration / longestTest) - 1);
+    }
+
+    private boolean longestChunkHasOneTest(SortedSet<TimedTest> orderedTests, int totalChunks) {
+        Chunk longestChunk = chunk(orderedTests, totalChunks).getLongest();
+        return longestChunk.size() == 1; // Total runtime is the time taken by the longest test
+    }
+
+    private Future<Integer> suggestNumberOfChunksInBackground(final SortedSet<TimedTest> orderedTests) {
+        FutureTask<Integer> suggestion = new FutureTask<>(new Callable<Integer>() {
+            @Override
+            public Integer call() throws UnableToSuggestTotalChunks {
+                return suggestedNumberOfChunks(orderedTests);
+            }
+        });
+        Thread suggester = new Thread(suggestion, "surefire-splitter-chunk-suggester");
+        suggester.setDaemon(true);
+        suggester.start();
+        return suggestion;
+    }
+
+    private static int waitFor(Future<Integer> suggestion) throws UnableToSuggestTotalChunks {
+        try {
+            return suggestion.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new UnableToSuggestTotalChunks("I was interrupted while working it out");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof UnableToSuggestTotalChunks) {
+                throw (UnableToSuggestTotalChunks) e.getCause();
+            } else {
+                throw new RuntimeException("Failed to work out how many chunks to suggest", e.getCause());
+            }
+        }
+    }
+
+    private static DurationIndex waitForHistory(Future<DurationIndex> history) {
+        try {
+            return history.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while loading test history", e);
+        } catch (ExecutionException e) {
+            // Rethrow what loading the history would have thrown if it had been done on this thread
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            } else {
+                throw new RuntimeException("Failed to load test history", e.getCause());
             }
         }
-        throw UnableToSuggestTotalChunks.requiresMoreChunksThan(MAX_SUGGESTED_CHUNKS);
     }
 
     public static class UnableToSuggestTotalChunks extends Exception {
@@ -0,0 +1,232 @@
+/**
+ * Surefire Splitter
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.allocation;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * How long a chunk's tests were expected to take, compared with how long they actually took, so that we can tell how
+ * good the allocation was (e.g. to tune how durations are estimated, or to notice that the test history is out of date).
+ * <p>
+ * It's saved as JSON, with the chunk's predicted and actual duration, how unbalanced the chunks were expected to be
+ * (the predicted duration of the longest chunk divided by the average), the worst misprediction, and the predicted and
+ * actual duration of each test class that was run. Errors are actual minus predicted, in seconds, and as a proportion
+ * of the prediction.
+ */
+public class AccuracyReport {
+
+    public static class TestClassAccuracy {
+        private final String testClass;
+        private final double predictedSeconds;
+        private final double actualSeconds;
+        private final boolean estimated;
+
+        TestClassAccuracy(String testClass, double predictedSeconds, double actualSeconds, boolean estimated) {
+            this.testClass = testClass;
+            this.predictedSeconds = predictedSeconds;
+            this.actualSeconds = actualSeconds;
+            this.estimated = estimated;
+        }
+
+        public String getTestClass() {
+            return testClass;
+        }
+
+        public double getPredictedSeconds() {
+            return predictedSeconds;
+        }
+
+        public double getActualSeconds() {
+            return actualSeconds;
+        }
+
+        public double getErrorSeconds() {
+            return actualSeconds - predictedSeconds;
+        }
+    }
+
+    /**
+     * @param actualSeconds how long each test class in the chunk took, by name (test classes that didn't run are left
+     * out of the per-class comparison)
+     */
+    public static AccuracyReport of(AllocationPlan plan, int chunkNumber, Map<String, Double> actualSeconds) {
+        Map<String, Double> predictedSeconds = new LinkedHashMap<>();
+        Map<String, Boolean> estimated = new LinkedHashMap<>();
+        for (TimedTest test : plan.getTests(chunkNumber)) {
+            String testClass = test.getTestClass().getName();
+            Double predictedSoFar = predictedSeconds.get(testClass);
+            predictedSeconds.put(testClass, (predictedSoFar == null ? 0.0 : predictedSoFar) + test.getDuration().getSeconds());
+            estimated.put(testClass, test.getDuration().isUnknown());
+        }
+        List<TestClassAccuracy> testClasses = new ArrayList<>(predictedSeconds.size());
+        for (Map.Entry<String, Double> prediction : predictedSeconds.entrySet()) {
+            Double actual = actualSeconds.get(prediction.getKey());
+            if (actual != null) {
+                testClasses.add(new TestClassAccuracy(prediction.getKey(), prediction.getValue(), actual, estimated.get(prediction.getKey())));
+            }
+        }
+
+        double totalPredictedSeconds = 0.0;
+        double longestPredictedSeconds = 0.0;
+        for (int i = 1; i <= plan.getTotalChunks(); i++) {
+            double chunkSeconds = plan.getPredictedDuration(i).getSeconds();
+            totalPredictedSeconds += chunkSeconds;
+            longestPredictedSeconds = Math.max(longestPredictedSeconds, chunkSeconds);
+        }
+        double averagePredictedSeconds = totalPredictedSeconds / plan.getTotalChunks();
+
+        double chunkActualSeconds = 0.0;
+        for (Double seconds : actualSeconds.values()) {
+            chunkActualSeconds += seconds;
+        }
+        return new AccuracyReport(
+                chunkNumber,
+                plan.getTotalChunks(),
+                plan.getPredictedDuration(chunkNumber).getSeconds(),
+                chunkActualSeconds,
+                averagePredictedSeconds > 0.0 ? longestPredictedSeconds / averagePredictedSeconds : 1.0,
+                testClasses
+        );
+    }
+
+    private final int chunkNumber;
+    private final int totalChunks;
+    private final double predictedSeconds;
+    private final double actualSeconds;
+    private final double predictedImbalance;
+    private final List<TestClassAccuracy> testClasses;
+
+    private AccuracyReport(int chunkNumber, int totalChunks, double predictedSeconds, double actualSeconds, double predictedImbalance, List<TestClassAccuracy> testClasses) {
+        this.chunkNumber = chunkNumber;
+        this.totalChunks = totalChunks;
+        this.predictedSeconds = predictedSeconds;
+        this.actualSeconds = actualSeconds;
+        this.predictedImbalance = predictedImbalance;
+        this.testClasses = testClasses;
+    }
+
+    public double getPredictedSeconds() {
+        return predictedSeconds;
+    }
+
+    public double getActualSeconds() {
+        return actualSeconds;
+    }
+
+    public double getPredictedImbalance() {
+        return predictedImbalance;
+    }
+
+    /**
+     * @return the test class whose actual duration was furthest from its predicted duration, or <code>null</code> if
+     * none were run
+     */
+    public TestClassAccuracy getWorstMisprediction() {
+        TestClassAccuracy worst = null;
+        for (TestClassAccuracy testClass : testClasses) {
+            if (worst == null || Math.abs(testClass.getErrorSeconds()) > Math.abs(worst.getErrorSeconds())) {
+                worst = testClass;
+            }
+        }
+        return worst;
+    }
+
+    public List<TestClassAccuracy> getTestClasses() {
+        return testClasses;
+    }
+
+    /**
+     * Saves the report to a temporary file first, so that it's never seen half-written.
+     */
+    public void save(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path tempFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try (Writer output = Files.newBufferedWriter(tempFile, UTF_8)) {
+            output.write(toJson());
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        Files.move(tempFile, file, ATOMIC_MOVE, REPLACE_EXISTING);
+    }
+
+    public String toJson() {
+        StringBuilder json = new StringBuilder();
+        json.append("{\n");
+        json.append("  \"chunkNumber\": ").append(chunkNumber).append(",\n");
+        json.append("  \"totalChunks\": ").append(totalChunks).append(",\n");
+        json.append("  \"predictedSeconds\": ").append(number(predictedSeconds)).append(",\n");
+        json.append("  \"actualSeconds\": ").append(number(actualSeconds)).append(",\n");
+        json.append("  \"errorSeconds\": ").append(number(actualSeconds - predictedSeconds)).append(",\n");
+        json.append("  \"relativeError\": ").append(relativeError(predictedSeconds, actualSeconds)).append(",\n");
+        json.append("  \"predictedImbalance\": ").append(number(predictedImbalance)).append(",\n");
+        TestClassAccuracy worst = getWorstMisprediction();
+        json.append("  \"worstMisprediction\": ").append(worst == null ? "null" : toJson(worst)).append(",\n");
+        json.append("  \"testClasses\": [");
+        for (int i = 0; i < testClasses.size(); i++) {
+            json.append(i == 0 ? "\n    " : ",\n    ").append(toJson(testClasses.get(i)));
+        }
+        json.append(testClasses.isEmpty() ? "]\n" : "\n  ]\n");
+        json.append("}\n");
+        return json.toString();
+    }
+
+    private static String toJson(TestClassAccuracy testClass) {
+        return "{\"testClass\": " + string(testClass.testClass)
+                + ", \"predictedSeconds\": " + number(testClass.predictedSeconds)
+                + ", \"actualSeconds\": " + number(testClass.actualSeconds)
+                + ", \"errorSeconds\": " + number(testClass.getErrorSeconds())
+                + ", \"relativeError\": " + relativeError(testClass.predictedSeconds, testClass.actualSeconds)
+                + ", \"estimated\": " + testClass.estimated
+                + "}";
+    }
+
+    private static String relativeError(double predicted, double actual) {
+        return predicted > 0.0 ? number((actual - predicted) / predicted) : "null";
+    }
+
+    private static String number(double value) {
+        return Double.isNaN(value) || Double.isInfinite(value) ? "null" : String.valueOf(value);
+    }
+
+    private static String string(String value) {
+        StringBuilder json = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format("\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+}
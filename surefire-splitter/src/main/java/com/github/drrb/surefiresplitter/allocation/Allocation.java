@@ -0,0 +1,83 @@
+/**
+ * Surefire Splitter
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.allocation;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The tests to run in a chunk: some test classes, some of which might only have some of their methods run (if they've
+ * been split between chunks).
+ */
+public class Allocation implements Iterable<Class<?>> {
+
+    public static Allocation allOf(Iterable<Class<?>> testClasses) {
+        Allocation allocation = new Allocation();
+        for (Class<?> testClass : testClasses) {
+            allocation.add(testClass, null);
+        }
+        return allocation;
+    }
+
+    /**
+     * @param tests the tests (or parts of them), in the order they should be run
+     */
+    public static Allocation of(Iterable<TimedTest> tests) {
+        Allocation allocation = new Allocation();
+        for (TimedTest test : tests) {
+            allocation.add(test.getTestClass(), test.getMethods());
+        }
+        return allocation;
+    }
+
+    private final Map<Class<?>, TestMethods> tests = new LinkedHashMap<>();
+
+    /**
+     * @param methods which methods to run, or <code>null</code> to run all of them
+     */
+    public void add(Class<?> testClass, TestMethods methods) {
+        if (!tests.containsKey(testClass)) {
+            tests.put(testClass, methods);
+        } else if (tests.get(testClass) != null) {
+            tests.put(testClass, methods == null ? null : tests.get(testClass).plus(methods));
+        }
+    }
+
+    /**
+     * @return which methods of the test class to run, or <code>null</code> if all of them should be run
+     */
+    public TestMethods getMethods(Class<?> testClass) {
+        return tests.get(testClass);
+    }
+
+    public boolean isSplittingTestClasses() {
+        for (TestMethods methods : tests.values()) {
+            if (methods != null) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public Iterator<Class<?>> iterator() {
+        return Collections.unmodifiableSet(tests.keySet()).iterator();
+    }
+}
@@ -0,0 +1,230 @@
+/**
+ * Surefire Splitter
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.allocation;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Allocations of tests to chunks ({@link AllocationPlan}s), saved in a directory so that they can be shared between JVMs
+ * in the same build (e.g. Surefire's forks), which would otherwise each load the test history and work out the same
+ * allocation.
+ * <p>
+ * Allocations are keyed on everything that goes into them: the test classes, the fingerprint of the test history, the
+ * total number of chunks, and any settings that change how tests are allocated. A lock is held on the directory's lock
+ * file while an allocation is looked up and worked out, so that when several JVMs start at once only the first one
+ * does the work. There's only one lock file, which is reused for every allocation: deleting it after use would let a
+ * JVM that's waiting on the old file and one that's just created a new one both think they have the lock.
+ * <p>
+ * Every build has new test history, so it saves a new allocation. Only the most recently saved allocations are kept.
+ */
+public class AllocationCache {
+
+    static final String LOCK_FILE_NAME = "allocations.lock";
+    private static final String FILE_NAME_PREFIX = "allocation-";
+    static final int MAX_SAVED_ALLOCATIONS = 10;
+
+    public static class Key {
+        private final String hash;
+        private final int totalChunks;
+
+        private Key(String hash, int totalChunks) {
+            this.hash = hash;
+            this.totalChunks = totalChunks;
+        }
+
+        @Override
+        public String toString() {
+            return hash;
+        }
+    }
+
+    public static class Lock {
+        private final FileChannel channel;
+
+        private Lock(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        public void release() {
+            try {
+                channel.close(); // Releases the lock too
+            } catch (IOException e) {
+                System.out.println("Couldn't release allocation cache lock (" + e + ")");
+            }
+        }
+    }
+
+    public static AllocationCache in(Path directory) {
+        return new AllocationCache(directory);
+    }
+
+    private final Path directory;
+
+    private AllocationCache(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * @param settings anything else that changes how the tests are allocated (e.g. whether test classes are split)
+     */
+    public Key key(Iterable<Class<?>> tests, String historyFingerprint, int totalChunks, String settings) {
+        SortedSet<String> testNames = new TreeSet<>();
+        for (Class<?> test : tests) {
+            testNames.add(test.getName());
+        }
+        MessageDigest digest = sha1();
+        for (String testName : testNames) {
+            digest.update(testName.getBytes(UTF_8));
+            digest.update((byte) '\n');
+        }
+        return new Key(historyHash(historyFingerprint, totalChunks, settings) + "-" + toHex(digest.digest()), totalChunks);
+    }
+
+    /**
+     * Tells whether an allocation has been saved for this test history (for any set of tests), without having to
+     * find the tests first: if one has, the allocation we're about to work out has probably been saved too (e.g. by
+     * another fork).
+     */
+    public boolean hasAllocationsFor(String historyFingerprint, int totalChunks, String settings) {
+        if (!Files.isDirectory(directory)) {
+            return false;
+        }
+        try (DirectoryStream<Path> allocations = Files.newDirectoryStream(directory, FILE_NAME_PREFIX + historyHash(historyFingerprint, totalChunks, settings) + "-*")) {
+            return allocations.iterator().hasNext();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Waits until no other JVM is working on an allocation, then locks the cache until the lock is released.
+     */
+    public Lock lock(Key key) throws IOException {
+        Files.createDirectories(directory);
+        FileChannel channel = FileChannel.open(directory.resolve(LOCK_FILE_NAME), CREATE, WRITE);
+        try {
+            channel.lock();
+            return new Lock(channel);
+        } catch (IOException | OverlappingFileLockException e) {
+            channel.close();
+            throw e instanceof IOException ? (IOException) e : new IOException("Allocation cache is already locked in this JVM", e);
+        }
+    }
+
+    /**
+     * @return the plan, or <code>null</code> if the allocation hasn't been cached, or if it can't be used
+     */
+    public AllocationPlan load(Key key, Iterable<Class<?>> tests) {
+        Path file = getFile(key);
+        try {
+            AllocationPlan plan = AllocationPlan.load(file, tests);
+            return plan == null || plan.getTotalChunks() != key.totalChunks ? null : plan;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.out.println("Couldn't read cached allocation '" + file + "': working it out again (" + e + ")");
+            return null;
+        }
+    }
+
+    /**
+     * Saves the allocation, and deletes the oldest ones so that only the most recent are kept. Only call this while
+     * holding the lock.
+     */
+    public void save(Key key, AllocationPlan plan) {
+        Path file = getFile(key);
+        try {
+            plan.save(file);
+        } catch (IOException e) {
+            System.out.println("Couldn't save allocation to '" + file + "': it will be worked out again next time (" + e + ")");
+            return;
+        }
+        deleteOldAllocations(file);
+    }
+
+    public Path getFile(Key key) {
+        return directory.resolve(FILE_NAME_PREFIX + key);
+    }
+
+    private void deleteOldAllocations(Path justSaved) {
+        final Map<Path, Long> savedTimes = new HashMap<>();
+        try (DirectoryStream<Path> allocations = Files.newDirectoryStream(directory, FILE_NAME_PREFIX + "*")) {
+            for (Path allocation : allocations) {
+                if (!allocation.equals(justSaved) && !allocation.getFileName().toString().endsWith(".tmp")) {
+                    savedTimes.put(allocation, Files.getLastModifiedTime(allocation).toMillis());
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Couldn't look through the allocation cache at '" + directory + "' (" + e + ")");
+            return;
+        }
+        List<Path> mostRecentFirst = new ArrayList<>(savedTimes.keySet());
+        Collections.sort(mostRecentFirst, new Comparator<Path>() {
+            @Override
+            public int compare(Path a, Path b) {
+                return Long.compare(savedTimes.get(b), savedTimes.get(a));
+            }
+        });
+        for (Path oldAllocation : mostRecentFirst.subList(Math.min(MAX_SAVED_ALLOCATIONS - 1, mostRecentFirst.size()), mostRecentFirst.size())) {
+            try {
+                Files.deleteIfExists(oldAllocation);
+            } catch (IOException e) {
+                System.out.println("Couldn't delete old allocation '" + oldAllocation + "' (" + e + ")");
+            }
+        }
+    }
+
+    private static String historyHash(String historyFingerprint, int totalChunks, String settings) {
+        MessageDigest digest = sha1();
+        digest.update(historyFingerprint.getBytes(UTF_8));
+        digest.update((byte) 0);
+        digest.update(String.valueOf(totalChunks).getBytes(UTF_8));
+        digest.update((byte) 0);
+        digest.update(settings.getBytes(UTF_8));
+        return toHex(digest.digest());
+    }
+
+    private static MessageDigest sha1() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-1 should always be available", e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
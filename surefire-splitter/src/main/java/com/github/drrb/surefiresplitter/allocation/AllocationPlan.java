@@ -0,0 +1,204 @@
+/**
+ * Surefire Splitter
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.allocation;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+/**
+ * The tests in every chunk (in chunk order, and in the order they'll be run), along with how long each of them is
+ * expected to take.
+ * <p>
+ * Plans can be saved to a compact binary file and loaded again, so that the allocation can be worked out once (e.g. in
+ * an earlier stage of a pipeline) and then just looked up by each chunk, without loading the test history.
+ */
+public class AllocationPlan {
+
+    private static final int MAGIC_NUMBER = 0x53535350; // "SSSP"
+    private static final int VERSION = 1;
+    private static final byte ALL_METHODS = 0;
+    private static final byte ONLY_METHODS = 1;
+    private static final byte ALL_EXCEPT_METHODS = 2;
+
+    public static AllocationPlan of(Chunks chunks, int totalChunks) {
+        List<List<TimedTest>> plannedChunks = new ArrayList<>(totalChunks);
+        for (int chunkNumber = 1; chunkNumber <= totalChunks; chunkNumber++) {
+            plannedChunks.add(new ArrayList<>(chunks.get(chunkNumber).getTestSuites()));
+        }
+        return new AllocationPlan(plannedChunks);
+    }
+
+    /**
+     * @param tests the tests that are going to be run
+     * @return the plan, or <code>null</code> if it isn't for the same tests
+     */
+    public static AllocationPlan load(Path file, Iterable<Class<?>> tests) throws IOException {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return read(input, tests);
+        }
+    }
+
+    /**
+     * @see #load(Path, Iterable)
+     */
+    public static AllocationPlan read(DataInput input, Iterable<Class<?>> tests) throws IOException {
+        if (input.readInt() != MAGIC_NUMBER || input.readInt() != VERSION) {
+            throw new IOException("Unrecognized allocation plan format");
+        }
+        Map<String, Class<?>> testsByName = new HashMap<>();
+        for (Class<?> test : tests) {
+            testsByName.put(test.getName(), test);
+        }
+        Set<String> plannedTestNames = new HashSet<>(testsByName.size() * 2);
+        int totalChunks = input.readInt();
+        List<List<TimedTest>> plannedChunks = new ArrayList<>(totalChunks);
+        for (int i = 0; i < totalChunks; i++) {
+            int chunkSize = input.readInt();
+            List<TimedTest> chunk = new ArrayList<>(chunkSize);
+            for (int j = 0; j < chunkSize; j++) {
+                String testName = input.readUTF();
+                TestMethods methods = readMethods(input);
+                Duration duration = readDuration(input);
+                Class<?> test = testsByName.get(testName);
+                if (test == null) {
+                    return null;
+                }
+                plannedTestNames.add(testName);
+                chunk.add(new TimedTest(test, duration, 0, methods));
+            }
+            plannedChunks.add(chunk);
+        }
+        if (plannedTestNames.size() != testsByName.size()) {
+            return null;
+        }
+        return new AllocationPlan(plannedChunks);
+    }
+
+    private final List<List<TimedTest>> chunks;
+
+    private AllocationPlan(List<List<TimedTest>> chunks) {
+        this.chunks = chunks;
+    }
+
+    public int getTotalChunks() {
+        return chunks.size();
+    }
+
+    public Allocation getAllocation(int chunkNumber) {
+        return Allocation.of(getTests(chunkNumber));
+    }
+
+    /**
+     * @return the tests in the chunk (or parts of them, if they've been split between chunks), in the order they'll be
+     * run
+     */
+    public List<TimedTest> getTests(int chunkNumber) {
+        return Collections.unmodifiableList(chunks.get(chunkNumber - 1));
+    }
+
+    public Duration getPredictedDuration(int chunkNumber) {
+        Duration total = Duration.of(0.0);
+        for (TimedTest test : getTests(chunkNumber)) {
+            total = total.plus(test.getDuration());
+        }
+        return total;
+    }
+
+    /**
+     * Saves the plan to a temporary file first, so that it's never seen half-written.
+     */
+    public void save(Path file) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        Path tempFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+            write(output);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        Files.move(tempFile, file, ATOMIC_MOVE, REPLACE_EXISTING);
+    }
+
+    public void write(DataOutput output) throws IOException {
+        output.writeInt(MAGIC_NUMBER);
+        output.writeInt(VERSION);
+        output.writeInt(chunks.size());
+        for (List<TimedTest> chunk : chunks) {
+            output.writeInt(chunk.size());
+            for (TimedTest test : chunk) {
+                output.writeUTF(test.getTestClass().getName());
+                writeMethods(test.getMethods(), output);
+                writeDuration(test.getDuration(), output);
+            }
+        }
+    }
+
+    private static void writeMethods(TestMethods methods, DataOutput output) throws IOException {
+        if (methods == null) {
+            output.writeByte(ALL_METHODS);
+            return;
+        }
+        output.writeByte(methods.isExclusive() ? ALL_EXCEPT_METHODS : ONLY_METHODS);
+        output.writeInt(methods.getMethods().size());
+        for (String method : methods.getMethods()) {
+            output.writeUTF(method);
+        }
+    }
+
+    private static TestMethods readMethods(DataInput input) throws IOException {
+        byte type = input.readByte();
+        if (type == ALL_METHODS) {
+            return null;
+        }
+        int numberOfMethods = input.readInt();
+        Set<String> methods = new HashSet<>(numberOfMethods * 2);
+        for (int i = 0; i < numberOfMethods; i++) {
+            methods.add(input.readUTF());
+        }
+        return type == ALL_EXCEPT_METHODS ? TestMethods.allExcept(methods) : TestMethods.only(methods);
+    }
+
+    private static void writeDuration(Duration duration, DataOutput output) throws IOException {
+        output.writeBoolean(duration.isUnknown());
+        output.writeDouble(duration.getSeconds());
+    }
+
+    private static Duration readDuration(DataInput input) throws IOException {
+        boolean unknown = input.readBoolean();
+        double seconds = input.readDouble();
+        return unknown ? Duration.estimated(seconds) : Duration.of(seconds);
+    }
+}
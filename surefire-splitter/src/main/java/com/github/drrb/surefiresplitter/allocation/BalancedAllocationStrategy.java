@@ -0,0 +1,163 @@
+/**
+ * Surefire Splitter
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.allocation;
+
+import com.github.drrb.surefiresplitter.spi.AllocationStrategy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Allocates tests greedily, then evens the chunks out by repeatedly moving a test from the longest chunk to the
+ * shortest one, or swapping a test in the longest chunk for a shorter one in the shortest chunk.
+ * <p>
+ * Each step picks the move or swap that brings the two chunks closest to the same duration, and it stops when there
+ * isn't one that helps, or after a fixed number of steps. That way it always comes up with the same allocation, and
+ * can't take too long: each step only looks at the tests in the longest and shortest chunks, so it costs about as much
+ * as sorting one chunk's tests, however many tests there are altogether.
+ */
+public class BalancedAllocationStrategy implements AllocationStrategy {
+
+    public static final String NAME = "balanced";
+    private static final int MAX_STEPS = 1000;
+    private static final double TOLERANCE = 1e-9;
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Balanced allocation strategy (" + NAME + ")";
+    }
+
+    @Override
+    public int[] allocate(double[] durations, int totalChunks) {
+        int[] allocation = new GreedyAllocationStrategy().allocate(durations, totalChunks);
+        double[] chunkDurations = new double[totalChunks];
+        List<List<Integer>> chunkTests = new ArrayList<>(totalChunks);
+        for (int chunk = 0; chunk < totalChunks; chunk++) {
+            chunkTests.add(new ArrayList<Integer>());
+        }
+        for (int test = 0; test < durations.length; test++) {
+            chunkDurations[allocation[test]] += durations[test];
+            chunkTests.get(allocation[test]).add(test);
+        }
+        for (int step = 0; step < MAX_STEPS && improve(durations, allocation, chunkDurations, chunkTests); step++) {
+            // Keep going
+        }
+        return allocation;
+    }
+
+    /**
+     * @param chunkTests the tests in each chunk, in order
+     */
+    private static boolean improve(double[] durations, int[] allocation, double[] chunkDurations, List<List<Integer>> chunkTests) {
+        int longest = 0;
+        int shortest = 0;
+        for (int chunk = 1; chunk < chunkDurations.length; chunk++) {
+            if (chunkDurations[chunk] > chunkDurations[longest]) {
+                longest = chunk;
+            }
+            if (chunkDurations[chunk] < chunkDurations[shortest]) {
+                shortest = chunk;
+            }
+        }
+        double halfGap = (chunkDurations[longest] - chunkDurations[shortest]) / 2;
+        List<Integer> shortestChunkByDuration = new ArrayList<>(chunkTests.get(shortest));
+        Collections.sort(shortestChunkByDuration, new ByDuration(durations));
+
+        // Moving (or swapping) a test that's d seconds longer evens the chunks out best when d is half of the gap
+        int bestFromLongest = -1;
+        int bestFromShortest = -1; // Stays -1 for a move rather than a swap
+        double bestDistanceFromEven = halfGap - TOLERANCE;
+        for (int test : chunkTests.get(longest)) {
+            if (durations[test] > TOLERANCE && Math.abs(halfGap - durations[test]) < bestDistanceFromEven) {
+                bestFromLongest = test;
+                bestFromShortest = -1;
+                bestDistanceFromEven = Math.abs(halfGap - durations[test]);
+            }
+            int closest = closestTo(durations[test] - halfGap, shortestChunkByDuration, durations);
+            for (int candidate = Math.max(closest - 1, 0); candidate <= Math.min(closest, shortestChunkByDuration.size() - 1); candidate++) {
+                int other = shortestChunkByDuration.get(candidate);
+                double difference = durations[test] - durations[other];
+                if (difference > TOLERANCE && Math.abs(halfGap - difference) < bestDistanceFromEven) {
+                    bestFromLongest = test;
+                    bestFromShortest = other;
+                    bestDistanceFromEven = Math.abs(halfGap - difference);
+                }
+            }
+        }
+        if (bestFromLongest == -1) {
+            return false;
+        }
+        move(bestFromLongest, longest, shortest, durations, allocation, chunkDurations, chunkTests);
+        if (bestFromShortest != -1) {
+            move(bestFromShortest, shortest, longest, durations, allocation, chunkDurations, chunkTests);
+        }
+        return true;
+    }
+
+    private static void move(int test, int from, int to, double[] durations, int[] allocation, double[] chunkDurations, List<List<Integer>> chunkTests) {
+        allocation[test] = to;
+        chunkDurations[from] -= durations[test];
+        chunkDurations[to] += durations[test];
+        chunkTests.get(from).remove(Integer.valueOf(test));
+        List<Integer> toTests = chunkTests.get(to);
+        toTests.add(-Collections.binarySearch(toTests, test) - 1, test);
+    }
+
+    /**
+     * @return the position of the first test that's at least as long as the target duration
+     */
+    private static int closestTo(double targetDuration, List<Integer> testsByDuration, double[] durations) {
+        int low = 0;
+        int high = testsByDuration.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (durations[testsByDuration.get(middle)] < targetDuration) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private static class ByDuration implements Comparator<Integer> {
+        private final double[] durations;
+
+        ByDuration(double[] durations) {
+            this.durations = durations;
+        }
+
+        @Override
+        public int compare(Integer a, Integer b) {
+            int durationComparison = Double.compare(durations[a], durations[b]);
+            return durationComparison == 0 ? Integer.compare(a, b) : durationComparison;
+        }
+    }
+}
@@ -17,15 +17,14 @@
  */
 package com.github.drrb.surefiresplitter.allocation;
 
-import java.util.LinkedHashSet;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
 public class Chunk implements Comparable<Chunk> {
 
-    private final List<TimedTest> testSuites = new LinkedList<>();
+    private final List<TimedTest> testSuites = new ArrayList<>();
     private final int number;
+    private Duration duration = Duration.of(0.0);
 
     public Chunk(int number) {
         this.number = number;
@@ -33,26 +32,31 @@ public class Chunk implements Comparable<Chunk> {
 
     public void addTestSuite(TimedTest testSuite) {
         testSuites.add(testSuite);
+        duration = duration.plus(testSuite.getDuration());
     }
 
-    private Duration duration() {
-        Duration totalDuration = Duration.of(0.0);
-        for (TimedTest test : testSuites) {
-            totalDuration = totalDuration.plus(test.getDuration());
-        }
-        return totalDuration;
+    Duration duration() {
+        return duration;
+    }
+
+    int number() {
+        return number;
     }
 
     public int size() {
         return testSuites.size();
     }
 
+    List<TimedTest> getTestSuites() {
+        return testSuites;
+    }
+
     public Iterable<Class<?>> getTests() {
-        Set<Class<?>> result = new LinkedHashSet<>();
-        for (TimedTest test : testSuites) {
-            result.add(test.getTestClass());
-        }
-        return result;
+        return getAllocation();
+    }
+
+    public Allocation getAllocation() {
+        return Allocation.of(testSuites);
     }
 
     @Override
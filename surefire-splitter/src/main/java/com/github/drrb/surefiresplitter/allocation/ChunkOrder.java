@@ -0,0 +1,139 @@
+/**
+ * Surefire Splitter
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.allocation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Orders in which to run the tests in a chunk.
+ */
+public enum ChunkOrder {
+    /**
+     * The order they were allocated to the chunk in.
+     */
+    ALLOCATED {
+        @Override
+        public void sort(List<TimedTest> tests, DurationIndex oldRuns) {
+        }
+    },
+    /**
+     * Longest first, so that if the chunk is running over time, it's only the short tests at the end that hold it up.
+     */
+    LONGEST {
+        @Override
+        public void sort(List<TimedTest> tests, DurationIndex oldRuns) {
+            Collections.sort(tests, new Comparator<TimedTest>() {
+                @Override
+                public int compare(TimedTest a, TimedTest b) {
+                    return b.getDuration().compareTo(a.getDuration());
+                }
+            });
+        }
+    },
+    /**
+     * The tests that failed most recently first (then the rest, in the order they were allocated), so that failures
+     * are found sooner (e.g. with Surefire's <code>skipAfterFailureCount</code>).
+     */
+    FAILED {
+        @Override
+        public void sort(final List<TimedTest> tests, final DurationIndex oldRuns) {
+            final Map<String, Integer> runsSinceLastFailure = new HashMap<>();
+            for (TimedTest test : tests) {
+                int runs = oldRuns.getRunsSinceLastFailure(test.getTestClass().getName());
+                runsSinceLastFailure.put(test.getTestClass().getName(), runs == -1 ? Integer.MAX_VALUE : runs);
+            }
+            Collections.sort(tests, new Comparator<TimedTest>() {
+                @Override
+                public int compare(TimedTest a, TimedTest b) {
+                    return runsSinceLastFailure.get(a.getTestClass().getName()).compareTo(runsSinceLastFailure.get(b.getTestClass().getName()));
+                }
+            });
+        }
+
+        @Override
+        public boolean usesHistory() {
+            return true;
+        }
+    },
+    /**
+     * Grouped by package (in the order each package first comes up), so that tests that load the same classes run
+     * together.
+     */
+    PACKAGE {
+        @Override
+        public void sort(List<TimedTest> tests, DurationIndex oldRuns) {
+            final Map<String, Integer> packageOrder = new HashMap<>();
+            for (TimedTest test : tests) {
+                String packageName = packageOf(test);
+                if (!packageOrder.containsKey(packageName)) {
+                    packageOrder.put(packageName, packageOrder.size());
+                }
+            }
+            Collections.sort(tests, new Comparator<TimedTest>() {
+                @Override
+                public int compare(TimedTest a, TimedTest b) {
+                    return packageOrder.get(packageOf(a)).compareTo(packageOrder.get(packageOf(b)));
+                }
+            });
+        }
+    };
+
+    public static ChunkOrder named(String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            List<String> names = new ArrayList<>();
+            for (ChunkOrder order : values()) {
+                names.add(order.toString());
+            }
+            throw new RuntimeException("Expected chunk order to be one of " + names + ", but it was '" + name + "'");
+        }
+    }
+
+    /**
+     * Sorts the tests in place. The sort is stable, so tests that are equal stay in the order they were allocated.
+     *
+     * @param oldRuns the test history, if {@link #usesHistory()} (otherwise <code>null</code>)
+     */
+    public abstract void sort(List<TimedTest> tests, DurationIndex oldRuns);
+
+    /**
+     * @return whether the test history needs to be loaded to sort tests this way (even if the allocation itself has
+     * been worked out already)
+     */
+    public boolean usesHistory() {
+        return false;
+    }
+
+    private static String packageOf(TimedTest test) {
+        String name = test.getTestClass().getName();
+        int lastDot = name.lastIndexOf('.');
+        return lastDot == -1 ? "" : name.substring(0, lastDot);
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
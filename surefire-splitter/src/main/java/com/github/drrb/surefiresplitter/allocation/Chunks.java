@@ -18,12 +18,12 @@
 package com.github.drrb.surefiresplitter.allocation;
 
 import java.util.ArrayList;
-import java.util.Deque;
-import java.util.LinkedList;
 import java.util.List;
 
-import static java.util.Collections.sort;
-
+/**
+ * The chunks that tests have been allocated to. Which chunk each test goes in is up to the
+ * {@link com.github.drrb.surefiresplitter.spi.AllocationStrategy}.
+ */
 public class Chunks {
     private final List<Chunk> chunks;
 
@@ -34,12 +34,25 @@ public class Chunks {
         }
     }
 
-    public Chunk getShortest() {
-        return orderedChunks().getFirst();
+    /**
+     * Returns the chunk with the greatest total duration (the highest numbered one if there's a tie).
+     */
+    public Chunk getLongest() {
+        Chunk longest = chunks.get(0);
+        for (Chunk chunk : chunks) {
+            if (chunk.compareTo(longest) >= 0) {
+                longest = chunk;
+            }
+        }
+        return longest;
     }
 
-    public Chunk getLongest() {
-        return orderedChunks().getLast();
+    /**
+     * Returns the chunk at a position in the order they were created in, as opposed to {@link #get(int)}, which
+     * shuffles them.
+     */
+    public Chunk getByIndex(int chunkIndex) {
+        return chunks.get(chunkIndex);
     }
 
     public Chunk get(int chunkNumber) {
@@ -47,12 +60,6 @@ public class Chunks {
         return chunks.get(chunkIndex);
     }
 
-    private Deque<Chunk> orderedChunks() {
-        LinkedList<Chunk> sortedChunks = new LinkedList<>(chunks);
-        sort(sortedChunks);
-        return sortedChunks;
-    }
-
     private int getChunkIndex(int chunkNumber) {
         int base = Math.abs(hashCode()) % chunks.size();
         return (base + chunkNumber) % chunks.size();
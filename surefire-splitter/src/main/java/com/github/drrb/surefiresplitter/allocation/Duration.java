@@ -20,17 +20,31 @@ package com.github.drrb.surefiresplitter.allocation;
 public class Duration implements Comparable<Duration> {
     public static final Duration UNKNOWN = new Duration(0.0001);
     private final Double value;
+    private final boolean estimated;
 
     public static Duration of(Double value) {
         if (value == null) {
             return UNKNOWN;
         } else {
-            return new Duration(value);
+            return new Duration(value, false);
         }
     }
 
+    /**
+     * A guess at how long a test that hasn't run before will take. It's used to allocate tests like any other duration,
+     * but it still counts as unknown.
+     */
+    public static Duration estimated(double value) {
+        return new Duration(value, true);
+    }
+
     private Duration(Double value) {
+        this(value, false);
+    }
+
+    private Duration(Double value, boolean estimated) {
         this.value = value;
+        this.estimated = estimated;
     }
 
     @Override
@@ -42,7 +56,11 @@ public class Duration implements Comparable<Duration> {
         return new Duration(this.value + that.value);
     }
 
+    public double getSeconds() {
+        return value;
+    }
+
     public boolean isUnknown() {
-        return this == UNKNOWN;
+        return this == UNKNOWN || estimated;
     }
 }
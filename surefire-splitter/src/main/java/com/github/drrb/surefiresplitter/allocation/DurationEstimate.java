@@ -0,0 +1,99 @@
+/**
+ * Surefire Splitter
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.allocation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Ways of estimating how long a test will take from how long it took in previous runs.
+ */
+public enum DurationEstimate {
+    /**
+     * The most recent run.
+     */
+    FIRST {
+        @Override
+        double estimate(List<Double> mostRecentFirst) {
+            return mostRecentFirst.get(0);
+        }
+    },
+    /**
+     * An exponentially weighted moving average, so that recent runs count for more than older ones.
+     */
+    EWMA {
+        @Override
+        double estimate(List<Double> mostRecentFirst) {
+            double average = mostRecentFirst.get(mostRecentFirst.size() - 1);
+            for (int i = mostRecentFirst.size() - 2; i >= 0; i--) {
+                average = EWMA_WEIGHT * mostRecentFirst.get(i) + (1 - EWMA_WEIGHT) * average;
+            }
+            return average;
+        }
+    },
+    /**
+     * The median, so that a single unusually slow or quick run doesn't count.
+     */
+    MEDIAN {
+        @Override
+        double estimate(List<Double> mostRecentFirst) {
+            return percentile(mostRecentFirst, 0.5);
+        }
+    },
+    /**
+     * The 90th percentile: a pessimistic estimate, so that chunks are more likely to finish at about the same time
+     * when tests take longer than usual.
+     */
+    P90 {
+        @Override
+        double estimate(List<Double> mostRecentFirst) {
+            return percentile(mostRecentFirst, 0.9);
+        }
+    };
+
+    private static final double EWMA_WEIGHT = 0.3;
+
+    public static DurationEstimate named(String name) {
+        try {
+            return valueOf(name.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new RuntimeException("Expected duration estimate to be one of first, ewma, median or p90, but it was '" + name + "'");
+        }
+    }
+
+    /**
+     * @param mostRecentFirst the durations of previous runs, in seconds (there has to be at least one)
+     */
+    abstract double estimate(List<Double> mostRecentFirst);
+
+    private static double percentile(List<Double> values, double percentile) {
+        List<Double> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        double position = percentile * (sorted.size() - 1);
+        int below = (int) Math.floor(position);
+        int above = (int) Math.ceil(position);
+        return sorted.get(below) + (position - below) * (sorted.get(above) - sorted.get(below));
+    }
+
+    @Override
+    public String toString() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+}
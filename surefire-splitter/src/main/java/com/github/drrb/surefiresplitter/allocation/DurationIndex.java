@@ -0,0 +1,134 @@
+/**
+ * Surefire Splitter
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.allocation;
+
+import com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestCase;
+import com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestSuite;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Historical test durations, looked up by test class name.
+ * <p>
+ * If a test class appears in more than one old run, its duration is estimated from all of them (see
+ * {@link DurationEstimate}). Old runs should be listed most recent first, as report repos do. Each test class's
+ * duration is estimated once, up front, so that looking it up is cheap.
+ */
+public class DurationIndex {
+
+    public static DurationIndex of(List<JunitTestSuite> oldRuns) {
+        return of(oldRuns, DurationEstimate.FIRST);
+    }
+
+    public static DurationIndex of(List<JunitTestSuite> oldRuns, DurationEstimate estimate) {
+        Map<String, List<JunitTestSuite>> runsByName = new HashMap<>(oldRuns.size() * 2);
+        for (JunitTestSuite oldRun : oldRuns) {
+            List<JunitTestSuite> runs = runsByName.get(oldRun.getName());
+            if (runs == null) {
+                runs = new ArrayList<>(1);
+                runsByName.put(oldRun.getName(), runs);
+            }
+            runs.add(oldRun);
+        }
+        Map<String, Duration> durationsByName = new HashMap<>(runsByName.size() * 2);
+        for (Map.Entry<String, List<JunitTestSuite>> runs : runsByName.entrySet()) {
+            durationsByName.put(runs.getKey(), estimateDuration(runs.getValue(), estimate));
+        }
+        return new DurationIndex(durationsByName, runsByName, estimate);
+    }
+
+    private static Duration estimateDuration(List<JunitTestSuite> runs, DurationEstimate estimate) {
+        List<Double> durations = new ArrayList<>(runs.size());
+        for (JunitTestSuite run : runs) {
+            durations.add(run.getTime());
+        }
+        return Duration.of(estimate.estimate(durations));
+    }
+
+    private final Map<String, Duration> durationsByName;
+    private final Map<String, List<JunitTestSuite>> runsByName;
+    private final DurationEstimate estimate;
+
+    private DurationIndex(Map<String, Duration> durationsByName, Map<String, List<JunitTestSuite>> runsByName, DurationEstimate estimate) {
+        this.durationsByName = Collections.unmodifiableMap(durationsByName);
+        this.runsByName = Collections.unmodifiableMap(runsByName);
+        this.estimate = estimate;
+    }
+
+    public Duration get(String testClassName) {
+        Duration duration = durationsByName.get(testClassName);
+        return duration == null ? Duration.UNKNOWN : duration;
+    }
+
+    /**
+     * @return the estimated durations of the test class's methods, by method name, in the order they ran most recently
+     * (empty if the test class hasn't run before)
+     */
+    public Map<String, Duration> getTestCases(String testClassName) {
+        List<JunitTestSuite> runs = runsByName.get(testClassName);
+        if (runs == null) {
+            return Collections.emptyMap();
+        }
+        Map<String, List<Double>> durationsByMethod = new LinkedHashMap<>();
+        for (JunitTestSuite run : runs) {
+            Set<String> methodsInRun = new HashSet<>();
+            for (JunitTestCase testCase : run.getCases()) {
+                if (methodsInRun.add(testCase.getName())) {
+                    List<Double> durations = durationsByMethod.get(testCase.getName());
+                    if (durations == null) {
+                        durations = new ArrayList<>(runs.size());
+                        durationsByMethod.put(testCase.getName(), durations);
+                    }
+                    durations.add(testCase.getTime());
+                }
+            }
+        }
+        Map<String, Duration> testCases = new LinkedHashMap<>();
+        for (Map.Entry<String, List<Double>> method : durationsByMethod.entrySet()) {
+            testCases.put(method.getKey(), Duration.of(estimate.estimate(method.getValue())));
+        }
+        return testCases;
+    }
+
+    /**
+     * @return how many runs of the test class there have been since it last failed (e.g. zero if it failed in the most
+     * recent run), or <code>-1</code> if it hasn't failed in any of them
+     */
+    public int getRunsSinceLastFailure(String testClassName) {
+        List<JunitTestSuite> runs = runsByName.get(testClassName);
+        if (runs != null) {
+            for (int i = 0; i < runs.size(); i++) {
+                if (runs.get(i).getFailures() > 0) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    public boolean isEmpty() {
+        return runsByName.isEmpty();
+    }
+}
@@ -0,0 +1,78 @@
+/**
+ * Surefire Splitter
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.allocation;
+
+import com.github.drrb.surefiresplitter.spi.AllocationStrategy;
+
+import java.util.PriorityQueue;
+
+/**
+ * Puts each test, longest first, into whichever chunk is shortest so far (the lowest numbered one if there's a tie).
+ */
+public class GreedyAllocationStrategy implements AllocationStrategy {
+
+    public static final String NAME = "greedy";
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public String getDescription() {
+        return "Greedy allocation strategy (" + NAME + ")";
+    }
+
+    @Override
+    public int[] allocate(double[] durations, int totalChunks) {
+        final double[] chunkDurations = new double[totalChunks];
+        PriorityQueue<QueuedChunk> byDuration = new PriorityQueue<>(Math.max(totalChunks, 1));
+        for (int chunk = 0; chunk < totalChunks; chunk++) {
+            byDuration.add(new QueuedChunk(chunk, 0.0));
+        }
+        int[] allocation = new int[durations.length];
+        for (int test = 0; test < durations.length; test++) {
+            QueuedChunk shortest = byDuration.poll();
+            allocation[test] = shortest.chunk;
+            chunkDurations[shortest.chunk] += durations[test];
+            byDuration.add(new QueuedChunk(shortest.chunk, chunkDurations[shortest.chunk]));
+        }
+        return allocation;
+    }
+
+    private static class QueuedChunk implements Comparable<QueuedChunk> {
+        private final int chunk;
+        private final double duration;
+
+        QueuedChunk(int chunk, double duration) {
+            this.chunk = chunk;
+            this.duration = duration;
+        }
+
+        @Override
+        public int compareTo(QueuedChunk that) {
+            int durationComparison = Double.compare(this.duration, that.duration);
+            return durationComparison == 0 ? Integer.compare(this.chunk, that.chunk) : durationComparison;
+        }
+    }
+}
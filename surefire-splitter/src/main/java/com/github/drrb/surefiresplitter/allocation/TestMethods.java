@@ -0,0 +1,87 @@
+/**
+ * Surefire Splitter
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.allocation;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * The test methods of a test class to run in a chunk, when the test class is split between chunks.
+ * <p>
+ * Each part of a split test class lists the methods it runs, except for one, which runs all the methods that the
+ * others don't. That way, methods that weren't in the test history (e.g. ones that have been added since) still get
+ * run exactly once.
+ */
+public class TestMethods {
+
+    public static TestMethods only(Set<String> methods) {
+        return new TestMethods(false, methods);
+    }
+
+    public static TestMethods allExcept(Set<String> methods) {
+        return new TestMethods(true, methods);
+    }
+
+    private final boolean exclusive;
+    private final Set<String> methods;
+
+    private TestMethods(boolean exclusive, Set<String> methods) {
+        this.exclusive = exclusive;
+        this.methods = Collections.unmodifiableSet(new TreeSet<>(methods));
+    }
+
+    public boolean includes(String method) {
+        return methods.contains(method) != exclusive;
+    }
+
+    /**
+     * @return the methods that are run (or that are not run, if {@link #isExclusive()})
+     */
+    public Set<String> getMethods() {
+        return methods;
+    }
+
+    public boolean isExclusive() {
+        return exclusive;
+    }
+
+    /**
+     * Combines two parts of the same test class that ended up in the same chunk.
+     */
+    public TestMethods plus(TestMethods that) {
+        Set<String> combined = new TreeSet<>(this.methods);
+        if (this.exclusive && that.exclusive) {
+            combined.retainAll(that.methods);
+            return allExcept(combined);
+        } else if (this.exclusive) {
+            combined.removeAll(that.methods);
+            return allExcept(combined);
+        } else if (that.exclusive) {
+            return that.plus(this);
+        } else {
+            combined.addAll(that.methods);
+            return only(combined);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return (exclusive ? "all except " : "only ") + methods;
+    }
+}
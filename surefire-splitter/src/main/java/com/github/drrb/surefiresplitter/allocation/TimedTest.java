@@ -17,36 +17,101 @@
  */
 package com.github.drrb.surefiresplitter.allocation;
 
-import com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestSuite;
-
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
 
 public class TimedTest implements Comparable<TimedTest> {
     private final Class<?> testClass;
     private final Duration duration;
+    private final int part;
+    private final TestMethods methods;
 
     public TimedTest(Class<?> testClass, Duration duration) {
+        this(testClass, duration, 0, null);
+    }
+
+    TimedTest(Class<?> testClass, Duration duration, int part, TestMethods methods) {
         this.testClass = testClass;
         this.duration = duration;
+        this.part = part;
+        this.methods = methods;
     }
 
     @Override
     public int compareTo(TimedTest that) {
         int timeComparison = that.duration.compareTo(this.duration);
-        if (timeComparison == 0) {
-            return this.testClass.getName().compareTo(that.testClass.getName());
-        } else {
+        if (timeComparison != 0) {
             return timeComparison;
         }
+        int nameComparison = this.testClass.getName().compareTo(that.testClass.getName());
+        if (nameComparison != 0) {
+            return nameComparison;
+        }
+        return Integer.compare(this.part, that.part);
     }
 
-    public static TimedTest from(Class<?> testClass, List<JunitTestSuite> oldRuns) {
-        for (JunitTestSuite oldRun : oldRuns) {
-            if (testClass.getName().equals(oldRun.getName())) {
-                return new TimedTest(testClass, Duration.of(oldRun.getTime()));
+    public static TimedTest from(Class<?> testClass, DurationIndex oldRuns) {
+        return new TimedTest(testClass, oldRuns.get(testClass.getName()));
+    }
+
+    /**
+     * Splits the test class into (at most) the given number of parts that should take about the same time, by sharing
+     * out its test methods, longest first, to whichever part is shortest so far.
+     * <p>
+     * Each part gets a share of the test class's duration in proportion to how long its methods took, so that time
+     * spent outside of the test methods (e.g. in <code>@BeforeClass</code> methods) is shared out too.
+     *
+     * @param testCases the durations of the test class's methods
+     */
+    public List<TimedTest> splitByMethod(int parts, Map<String, Duration> testCases) {
+        parts = Math.min(parts, testCases.size());
+        if (parts < 2) {
+            return Collections.singletonList(this);
+        }
+
+        List<Map.Entry<String, Duration>> longestFirst = new ArrayList<>(testCases.entrySet());
+        Collections.sort(longestFirst, new Comparator<Map.Entry<String, Duration>>() {
+            @Override
+            public int compare(Map.Entry<String, Duration> a, Map.Entry<String, Duration> b) {
+                int timeComparison = b.getValue().compareTo(a.getValue());
+                return timeComparison == 0 ? a.getKey().compareTo(b.getKey()) : timeComparison;
             }
+        });
+        List<Set<String>> methodsInPart = new ArrayList<>(parts);
+        double[] secondsInPart = new double[parts];
+        for (int i = 0; i < parts; i++) {
+            methodsInPart.add(new TreeSet<String>());
         }
-        return new TimedTest(testClass, Duration.UNKNOWN);
+        double totalSeconds = 0.0;
+        for (Map.Entry<String, Duration> testCase : longestFirst) {
+            int shortestPart = 0;
+            for (int i = 1; i < parts; i++) {
+                if (secondsInPart[i] < secondsInPart[shortestPart]) {
+                    shortestPart = i;
+                }
+            }
+            methodsInPart.get(shortestPart).add(testCase.getKey());
+            secondsInPart[shortestPart] += testCase.getValue().getSeconds();
+            totalSeconds += testCase.getValue().getSeconds();
+        }
+
+        // The first part runs whatever the others don't, so that methods we haven't seen before still get run
+        Set<String> methodsInOtherParts = new TreeSet<>();
+        for (int i = 1; i < parts; i++) {
+            methodsInOtherParts.addAll(methodsInPart.get(i));
+        }
+        List<TimedTest> split = new ArrayList<>(parts);
+        for (int i = 0; i < parts; i++) {
+            double share = totalSeconds > 0.0 ? secondsInPart[i] / totalSeconds : (double) methodsInPart.get(i).size() / testCases.size();
+            TestMethods methods = i == 0 ? TestMethods.allExcept(methodsInOtherParts) : TestMethods.only(methodsInPart.get(i));
+            split.add(new TimedTest(testClass, Duration.of(duration.getSeconds() * share), i + 1, methods));
+        }
+        return split;
     }
 
     public Class<?> getTestClass() {
@@ -56,4 +121,11 @@ public class TimedTest implements Comparable<TimedTest> {
     public Duration getDuration() {
         return duration;
     }
+
+    /**
+     * @return which of the test class's methods to run, or <code>null</code> if all of them should be run
+     */
+    public TestMethods getMethods() {
+        return methods;
+    }
 }
@@ -0,0 +1,185 @@
+/**
+ * Surefire Splitter
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.allocation;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Guesses how long test classes that haven't run before will take, from the test classes that have.
+ * <p>
+ * A new test class is compared with the test classes in the same package (or all of them, if none of the others in its
+ * package have run before): its duration is estimated from the median time per test method and the number of test
+ * methods it has, or, if it doesn't seem to have any, from the median time per byte of bytecode and the size of its
+ * class file, or failing that, it's just the median duration.
+ */
+public class UnseenTestEstimator {
+
+    private static final String JUNIT_TEST_ANNOTATION = "org.junit.Test";
+
+    private final List<Sample> allSamples = new ArrayList<>();
+    private final Map<String, List<Sample>> samplesByPackage = new HashMap<>();
+
+    public UnseenTestEstimator(Iterable<TimedTest> knownTests) {
+        for (TimedTest knownTest : knownTests) {
+            Sample sample = new Sample(knownTest.getTestClass(), knownTest.getDuration().getSeconds());
+            allSamples.add(sample);
+            List<Sample> packageSamples = samplesByPackage.get(packageOf(knownTest.getTestClass()));
+            if (packageSamples == null) {
+                packageSamples = new ArrayList<>();
+                samplesByPackage.put(packageOf(knownTest.getTestClass()), packageSamples);
+            }
+            packageSamples.add(sample);
+        }
+    }
+
+    /**
+     * @return an estimated duration (which still counts as unknown), or {@link Duration#UNKNOWN} if there's nothing to
+     * go on
+     */
+    public Duration estimate(Class<?> testClass) {
+        List<Sample> samples = samplesByPackage.get(packageOf(testClass));
+        if (samples == null) {
+            samples = allSamples;
+        }
+        if (samples.isEmpty()) {
+            return Duration.UNKNOWN;
+        }
+
+        int testMethods = countTestMethods(testClass);
+        if (testMethods > 0) {
+            List<Double> secondsPerTestMethod = new ArrayList<>(samples.size());
+            for (Sample sample : samples) {
+                if (sample.getTestMethods() > 0) {
+                    secondsPerTestMethod.add(sample.seconds / sample.getTestMethods());
+                }
+            }
+            if (!secondsPerTestMethod.isEmpty()) {
+                return Duration.estimated(testMethods * median(secondsPerTestMethod));
+            }
+        }
+
+        long bytecodeSize = getBytecodeSize(testClass);
+        if (bytecodeSize > 0) {
+            List<Double> secondsPerByte = new ArrayList<>(samples.size());
+            for (Sample sample : samples) {
+                if (sample.getBytecodeSize() > 0) {
+                    secondsPerByte.add(sample.seconds / sample.getBytecodeSize());
+                }
+            }
+            if (!secondsPerByte.isEmpty()) {
+                return Duration.estimated(bytecodeSize * median(secondsPerByte));
+            }
+        }
+
+        List<Double> seconds = new ArrayList<>(samples.size());
+        for (Sample sample : samples) {
+            seconds.add(sample.seconds);
+        }
+        return Duration.estimated(median(seconds));
+    }
+
+    private static double median(List<Double> values) {
+        return DurationEstimate.MEDIAN.estimate(values);
+    }
+
+    private static String packageOf(Class<?> testClass) {
+        String name = testClass.getName();
+        int lastDot = name.lastIndexOf('.');
+        return lastDot == -1 ? "" : name.substring(0, lastDot);
+    }
+
+    /**
+     * Counts JUnit 4 test methods, or JUnit 3 ones if there aren't any (we go by name so that we don't need JUnit on
+     * the classpath).
+     */
+    static int countTestMethods(Class<?> testClass) {
+        int annotatedMethods = 0;
+        int namedMethods = 0;
+        try {
+            for (Method method : testClass.getMethods()) {
+                for (Annotation annotation : method.getAnnotations()) {
+                    if (annotation.annotationType().getName().equals(JUNIT_TEST_ANNOTATION)) {
+                        annotatedMethods++;
+                        break;
+                    }
+                }
+                if (method.getName().startsWith("test") && method.getParameterTypes().length == 0 && !Modifier.isStatic(method.getModifiers())) {
+                    namedMethods++;
+                }
+            }
+        } catch (LinkageError e) {
+            return 0;
+        }
+        return annotatedMethods > 0 ? annotatedMethods : namedMethods;
+    }
+
+    static long getBytecodeSize(Class<?> testClass) {
+        URL classFile = testClass.getResource("/" + testClass.getName().replace('.', '/') + ".class");
+        if (classFile == null) {
+            return -1;
+        }
+        try {
+            URLConnection connection = classFile.openConnection();
+            connection.setUseCaches(false);
+            try {
+                return connection.getContentLengthLong();
+            } finally {
+                connection.getInputStream().close();
+            }
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static class Sample {
+        private static final int NOT_LOOKED_UP = -2;
+
+        private final Class<?> testClass;
+        private final double seconds;
+        private int testMethods = NOT_LOOKED_UP;
+        private long bytecodeSize = NOT_LOOKED_UP;
+
+        Sample(Class<?> testClass, double seconds) {
+            this.testClass = testClass;
+            this.seconds = seconds;
+        }
+
+        int getTestMethods() {
+            if (testMethods == NOT_LOOKED_UP) {
+                testMethods = countTestMethods(testClass);
+            }
+            return testMethods;
+        }
+
+        long getBytecodeSize() {
+            if (bytecodeSize == NOT_LOOKED_UP) {
+                bytecodeSize = UnseenTestEstimator.getBytecodeSize(testClass);
+            }
+            return bytecodeSize;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ * Surefire Splitter
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.allocation;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A queue of tests to run, kept in a file that's shared between chunks, so that instead of running a fixed set of
+ * tests, each chunk keeps taking the next test until there are none left. That way, a chunk that's running slowly
+ * (e.g. on a busy machine) just ends up running fewer tests.
+ * <p>
+ * The first chunk to join the queue fills it up. The file is locked whenever it's read or written, and just holds
+ * the tests in the order they should be run, along with the position of the next one to take. If we know which run of
+ * the build this is, the queue is marked with it, so that a queue left over from an earlier run can be started again
+ * rather than being mistaken for this run's.
+ */
+public class WorkQueue {
+
+    private static final int MAGIC_NUMBER = 0x53535157; // "SSQW"
+    private static final int VERSION = 2;
+
+    private static class Header {
+        private final String runId;
+        private final String testsHash;
+
+        Header(String runId, String testsHash) {
+            this.runId = runId;
+            this.testsHash = testsHash;
+        }
+    }
+
+    public static WorkQueue in(Path file) {
+        return in(file, null);
+    }
+
+    /**
+     * @param runId identifies this run of the build (see
+     * {@link com.github.drrb.surefiresplitter.spi.RunIdentifyingConfigProvider}), or <code>null</code> if that's not
+     * known
+     */
+    public static WorkQueue in(Path file, String runId) {
+        return new WorkQueue(file, runId == null ? "" : runId);
+    }
+
+    private final Path file;
+    private final String runId;
+
+    private WorkQueue(Path file, String runId) {
+        this.file = file;
+        this.runId = runId;
+    }
+
+    /**
+     * Fills up the queue with the tests, unless another chunk in this run already has. A queue from a different run is
+     * started again.
+     *
+     * @param tests the names of the tests to run, in the order they should be taken from the queue
+     * @return <code>false</code> if the queue can't be used: if it's been filled up with a different set of tests in
+     * this run, or, if we don't know which run this is, with a different set of tests or with tests that have all been
+     * taken already (without a run ID, a used-up queue might just be left over from an earlier run, e.g. without a
+     * <code>clean</code>, and joining it would mean running no tests at all). In this run, a used-up queue just means
+     * that the other chunks have run all of the tests.
+     */
+    public boolean join(Collection<String> tests) throws IOException {
+        String testsHash = hash(tests);
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        try (RandomAccessFile queue = new RandomAccessFile(file.toFile(), "rw"); FileLock ignored = queue.getChannel().lock()) {
+            if (queue.length() == 0) {
+                fill(queue, testsHash, tests);
+                return true;
+            }
+            Header header;
+            try {
+                header = readHeader(queue);
+            } catch (IOException e) {
+                if (runId.isEmpty()) {
+                    throw e;
+                }
+                header = null; // Left over from an older version
+            }
+            if (!runId.isEmpty() && (header == null || !header.runId.equals(runId))) {
+                fill(queue, testsHash, tests);
+                return true;
+            }
+            if (!header.testsHash.equals(testsHash)) {
+                return false;
+            }
+            return !runId.isEmpty() || queue.readLong() < queue.length();
+        }
+    }
+
+    private void fill(RandomAccessFile queue, String testsHash, Collection<String> tests) throws IOException {
+        queue.setLength(0);
+        queue.writeInt(MAGIC_NUMBER);
+        queue.writeInt(VERSION);
+        queue.writeUTF(runId);
+        queue.writeUTF(testsHash);
+        long nextTestPointer = queue.getFilePointer();
+        queue.writeLong(0);
+        long firstTest = queue.getFilePointer();
+        for (String test : tests) {
+            queue.writeUTF(test);
+        }
+        queue.seek(nextTestPointer);
+        queue.writeLong(firstTest);
+    }
+
+    /**
+     * @return the name of the next test to run, or <code>null</code> if all of the tests have been taken
+     */
+    public String take() throws IOException {
+        try (RandomAccessFile queue = new RandomAccessFile(file.toFile(), "rw"); FileLock ignored = queue.getChannel().lock()) {
+            readHeader(queue);
+            long nextTestPointer = queue.getFilePointer();
+            long nextTest = queue.readLong();
+            if (nextTest >= queue.length()) {
+                return null;
+            }
+            queue.seek(nextTest);
+            String test = queue.readUTF();
+            long followingTest = queue.getFilePointer();
+            queue.seek(nextTestPointer);
+            queue.writeLong(followingTest);
+            return test;
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    private static Header readHeader(RandomAccessFile queue) throws IOException {
+        if (queue.length() < 8 || queue.readInt() != MAGIC_NUMBER || queue.readInt() != VERSION) {
+            throw new IOException("Unrecognized work queue format");
+        }
+        return new Header(queue.readUTF(), queue.readUTF());
+    }
+
+    private static String hash(Collection<String> tests) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("SHA-1 should always be available", e);
+        }
+        SortedSet<String> sortedTests = new TreeSet<>(tests);
+        for (String test : sortedTests) {
+            digest.update(test.getBytes(UTF_8));
+            digest.update((byte) '\n');
+        }
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -17,16 +17,20 @@
  */
 package com.github.drrb.surefiresplitter;
 
+import com.github.drrb.surefiresplitter.allocation.DurationEstimate;
 import com.github.drrb.surefiresplitter.spi.AllocationConfigProvider;
+import com.github.drrb.surefiresplitter.spi.AllocationStrategy;
 import com.github.drrb.surefiresplitter.spi.JunitReport;
 import com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestCase;
 import com.github.drrb.surefiresplitter.spi.ReportRepo;
 import com.github.drrb.surefiresplitter.spi.ReportRepoProvider;
 import org.junit.Test;
 
+import java.nio.file.Paths;
 import java.util.*;
 
 import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNull.nullValue;
 import static org.junit.Assert.assertThat;
 
 public class AllocationConfigTest {
@@ -95,6 +99,126 @@ public class AllocationConfigTest {
         AllocationConfig.get(serviceLookup);
     }
 
+    @Test
+    public void shouldAllocateTestsGreedilyByDefault() {
+        AllocationConfig config = AllocationConfig.get(new TestServiceLookup());
+        assertThat(config.getAllocationStrategy().getName(), is("greedy"));
+    }
+
+    @Test
+    public void shouldUseTheAllocationStrategyNamedInSystemProperties() {
+        TestServiceLookup serviceLookup = new TestServiceLookup();
+        serviceLookup.addProvider(new RoundRobinAllocationStrategy());
+        System.setProperty("surefire.allocationStrategy", "round-robin");
+        try {
+            AllocationConfig config = AllocationConfig.get(serviceLookup);
+            assertThat(config.getAllocationStrategy().getName(), is("round-robin"));
+        } finally {
+            System.clearProperty("surefire.allocationStrategy");
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void shouldThrowExceptionWhenAllocationStrategyIsUnknown() {
+        System.setProperty("surefire.allocationStrategy", "unknown");
+        try {
+            AllocationConfig.get(new TestServiceLookup());
+        } finally {
+            System.clearProperty("surefire.allocationStrategy");
+        }
+    }
+
+    @Test
+    public void shouldEstimateDurationsFromTheMostRecentRunByDefault() {
+        AllocationConfig config = AllocationConfig.get(new TestServiceLookup());
+        assertThat(config.getDurationEstimate(), is(DurationEstimate.FIRST));
+    }
+
+    @Test
+    public void shouldUseTheDurationEstimateNamedInSystemProperties() {
+        System.setProperty("surefire.durationEstimate", "p90");
+        try {
+            AllocationConfig config = AllocationConfig.get(new TestServiceLookup());
+            assertThat(config.getDurationEstimate(), is(DurationEstimate.P90));
+        } finally {
+            System.clearProperty("surefire.durationEstimate");
+        }
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void shouldThrowExceptionWhenDurationEstimateIsUnknown() {
+        System.setProperty("surefire.durationEstimate", "p99");
+        try {
+            AllocationConfig.get(new TestServiceLookup());
+        } finally {
+            System.clearProperty("surefire.durationEstimate");
+        }
+    }
+
+    @Test
+    public void shouldPrefetchHistoryByDefault() {
+        AllocationConfig config = AllocationConfig.get(new TestServiceLookup());
+        assertThat(config.isPrefetchingHistory(), is(true));
+    }
+
+    @Test
+    public void shouldNotPrefetchHistoryIfTurnedOffInSystemProperties() {
+        System.setProperty("surefire.prefetchHistory", "false");
+        try {
+            AllocationConfig config = AllocationConfig.get(new TestServiceLookup());
+            assertThat(config.isPrefetchingHistory(), is(false));
+        } finally {
+            System.clearProperty("surefire.prefetchHistory");
+        }
+    }
+
+    @Test
+    public void shouldNotReportAccuracyByDefault() {
+        AllocationConfig config = AllocationConfig.get(new TestServiceLookup());
+        assertThat(config.getAccuracyReportDir(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldReportAccuracyInTheModulesBuildDirectoryWhenTurnedOn() {
+        String baseDir = System.getProperty("basedir");
+        System.setProperty("basedir", "/builds/project/module");
+        System.setProperty("surefire.accuracyReport", "true");
+        try {
+            AllocationConfig config = AllocationConfig.get(new TestServiceLookup());
+            assertThat(config.getAccuracyReportDir(), is(Paths.get("/builds/project/module/target/surefire-splitter")));
+        } finally {
+            System.clearProperty("surefire.accuracyReport");
+            if (baseDir == null) {
+                System.clearProperty("basedir");
+            } else {
+                System.setProperty("basedir", baseDir);
+            }
+        }
+    }
+
+    private static class RoundRobinAllocationStrategy implements AllocationStrategy {
+
+        public String getName() {
+            return "round-robin";
+        }
+
+        public int[] allocate(double[] durations, int totalChunks) {
+            int[] allocation = new int[durations.length];
+            for (int i = 0; i < allocation.length; i++) {
+                allocation[i] = i % totalChunks;
+            }
+            return allocation;
+        }
+
+        public boolean isAvailable() {
+            return true;
+        }
+
+        public String getDescription() {
+            return "Round robin";
+        }
+    }
+
     private static class MemoryReportRepoProvider implements ReportRepoProvider {
 
         private final ReportRepo repo;
@@ -17,28 +17,44 @@
  */
 package com.github.drrb.surefiresplitter;
 
+import com.github.drrb.surefiresplitter.allocation.Allocation;
+import com.github.drrb.surefiresplitter.allocation.AllocationCache;
+import com.github.drrb.surefiresplitter.allocation.ChunkOrder;
+import com.github.drrb.surefiresplitter.allocation.WorkQueue;
 import com.github.drrb.surefiresplitter.faketests.*;
+import com.github.drrb.surefiresplitter.spi.FingerprintedReportRepo;
 import com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestSuite;
 import com.github.drrb.surefiresplitter.spi.ReportRepo;
 import org.hamcrest.Description;
 import org.hamcrest.Matcher;
 import org.hamcrest.TypeSafeMatcher;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 
 import static com.github.drrb.surefiresplitter.AllocationConfig.allocationConfig;
 import static com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestCase.testCase;
 import static com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestSuite.testSuite;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
 
 public class TestAllocatorTest {
 
     private final MemoryReportRepo NO_EXISTING_REPORTS = new MemoryReportRepo();
 
+    @Rule
+    public final TemporaryFolder tempDir = new TemporaryFolder();
+
     @Test
     public void shouldReturnAllTestsWhenNoChunkSelected() {
         TestAllocator allocator = new TestAllocator(allocationConfig().withoutSplitTests().withNoExistingReports().build());
@@ -141,6 +157,23 @@ public class TestAllocatorTest {
         assertThat(new TestAllocator(allocationConfig).suggestedNumberOfChunks(tests), is(4));
     }
 
+    @Test
+    public void shouldSuggestOneChunkPerTestWhenAllTestsTakeTheSameTime() throws Exception {
+        ReportRepo existingReports = new MemoryReportRepo()
+                .addTestSuite(fakeTest(A.class, 2))
+                .addTestSuite(fakeTest(B.class, 2))
+                .addTestSuite(fakeTest(C.class, 2))
+                .addTestSuite(fakeTest(D.class, 2))
+                .addTestSuite(fakeTest(E.class, 2))
+                .addTestSuite(fakeTest(F.class, 2))
+                .addTestSuite(fakeTest(G.class, 2));
+        AllocationConfig allocationConfig = allocationConfig().withExistingReports(existingReports).build();
+
+        List<Class<?>> tests = asList(A.class, B.class, C.class, D.class, E.class, F.class, G.class);
+
+        assertThat(new TestAllocator(allocationConfig).suggestedNumberOfChunks(tests), is(7));
+    }
+
     @Test(expected = TestAllocator.UnableToSuggestTotalChunks.class)
     public void shouldNotSuggestChunkNumberIfSomeTestsDontHaveReports() throws Exception {
         ReportRepo existingReports = new MemoryReportRepo()
@@ -158,6 +191,37 @@ public class TestAllocatorTest {
         assertThat(new TestAllocator(allocationConfig).suggestedNumberOfChunks(tests), is(4));
     }
 
+    @Test
+    public void shouldSpreadTestsThatHaventRunBeforeBetweenChunks() {
+        ReportRepo existingReports = new MemoryReportRepo()
+                .addTestSuite(fakeTest(A.class, 2))
+                .addTestSuite(fakeTest(B.class, 2))
+                .addTestSuite(fakeTest(C.class, 2));
+        AllocationConfig.Builder allocationConfig = allocationConfig().withExistingReports(existingReports);
+
+        List<Class<?>> tests = asList(A.class, B.class, C.class, D.class, E.class, F.class, G.class);
+        for (int chunkNumber = 1; chunkNumber <= 4; chunkNumber++) {
+            int testsInChunk = 0;
+            for (Class<?> test : new TestAllocator(allocationConfig.chunk(chunkNumber, 4)).allocate(tests)) {
+                testsInChunk++;
+            }
+            assertThat(testsInChunk == 1 || testsInChunk == 2, is(true));
+        }
+    }
+
+    @Test
+    public void shouldRunTestsInAChunkInTheConfiguredOrder() {
+        ReportRepo existingReports = new MemoryReportRepo()
+                .addTestSuite(fakeTest(A.class, 1))
+                .addTestSuite(fakeTest(B.class, 2))
+                .addTestSuite(testSuite().withName(C.class.getName()).withTime(3).withFailures(1).build());
+        AllocationConfig.Builder allocationConfig = allocationConfig().withExistingReports(existingReports);
+        List<Class<?>> tests = asList(A.class, B.class, C.class);
+
+        assertThat(new TestAllocator(allocationConfig.withChunkOrder(ChunkOrder.LONGEST).chunk(1, 1)).allocate(tests), contains(C.class, B.class, A.class));
+        assertThat(new TestAllocator(allocationConfig.withChunkOrder(ChunkOrder.FAILED).chunk(1, 1)).allocate(asList(B.class, A.class, C.class)), contains(C.class, B.class, A.class));
+    }
+
     @Test
     public void shouldIgnoreReportsFromNonScannedTests() {
         ReportRepo existingReports = new MemoryReportRepo()
@@ -177,6 +241,317 @@ public class TestAllocatorTest {
         assertThat(new TestAllocator(allocationConfig.chunk(4, 4)).allocate(tests), isEmpty());
     }
 
+    @Test
+    public void shouldReuseAnAllocationWorkedOutByAnotherJvmWithoutLoadingHistoryAgain() throws Exception {
+        CountingReportRepo existingReports = new CountingReportRepo("history-1", new MemoryReportRepo()
+                .addTestSuite(fakeTest(A.class, 1))
+                .addTestSuite(fakeTest(B.class, 1))
+                .addTestSuite(fakeTest(C.class, 2))
+                .addTestSuite(fakeTest(D.class, 2))
+                .addTestSuite(fakeTest(E.class, 2))
+                .addTestSuite(fakeTest(F.class, 3))
+                .addTestSuite(fakeTest(G.class, 6)));
+        Path allocationCacheDir = tempDir.newFolder("surefire-splitter").toPath();
+        AllocationCache allocationCache = AllocationCache.in(allocationCacheDir);
+        AllocationConfig.Builder allocationConfig = allocationConfig().withExistingReports(existingReports).withAllocationCache(allocationCache);
+
+        List<Class<?>> tests = asList(A.class, B.class, C.class, D.class, E.class, F.class, G.class);
+
+        assertThat(new TestAllocator(allocationConfig.chunk(1, 4)).allocate(tests), contains(F.class, B.class));
+        assertThat(existingReports.loads, is(1));
+        assertThat(new TestAllocator(allocationConfig.chunk(1, 4)).allocate(tests), contains(F.class, B.class));
+        assertThat(new TestAllocator(allocationConfig.chunk(2, 4)).allocate(tests), contains(C.class, E.class));
+        assertThat(new TestAllocator(allocationConfig.chunk(3, 4)).allocate(tests), contains(D.class, A.class));
+        assertThat(new TestAllocator(allocationConfig.chunk(4, 4)).allocate(tests), contains(G.class));
+        assertThat(existingReports.loads, is(1));
+
+        // A different set of tests is a different allocation
+        new TestAllocator(allocationConfig.chunk(1, 4)).allocate(asList(A.class, B.class));
+        assertThat(existingReports.loads, is(2));
+
+        // So is different history
+        existingReports.fingerprint = "history-2";
+        assertThat(new TestAllocator(allocationConfig.chunk(1, 4)).allocate(tests), contains(F.class, B.class));
+        assertThat(existingReports.loads, is(3));
+
+        // Three allocations, and one lock file for all of them
+        assertThat(allocationCacheDir.toFile().list().length, is(4));
+    }
+
+    @Test
+    public void shouldExportAPlanAndTakeAllocationsFromItWithoutLoadingHistory() throws Exception {
+        CountingReportRepo existingReports = new CountingReportRepo("history-1", new MemoryReportRepo()
+                .addTestSuite(fakeTest(A.class, 1))
+                .addTestSuite(fakeTest(B.class, 1))
+                .addTestSuite(fakeTest(C.class, 2))
+                .addTestSuite(fakeTest(D.class, 2))
+                .addTestSuite(fakeTest(E.class, 2))
+                .addTestSuite(fakeTest(F.class, 3))
+                .addTestSuite(fakeTest(G.class, 6)));
+        Path planFile = tempDir.getRoot().toPath().resolve("plans/allocation-plan");
+        List<Class<?>> tests = asList(A.class, B.class, C.class, D.class, E.class, F.class, G.class);
+
+        new TestAllocator(allocationConfig().withExistingReports(existingReports).withExportedAllocationPlan(planFile).chunk(1, 4)).allocate(tests);
+        assertThat(existingReports.loads, is(1));
+
+        AllocationConfig.Builder allocationConfig = allocationConfig().withExistingReports(existingReports).withAllocationPlan(planFile);
+        assertThat(new TestAllocator(allocationConfig.chunk(1, 4)).allocate(tests), contains(F.class, B.class));
+        assertThat(new TestAllocator(allocationConfig.chunk(2, 4)).allocate(tests), contains(C.class, E.class));
+        assertThat(new TestAllocator(allocationConfig.chunk(3, 4)).allocate(tests), contains(D.class, A.class));
+        assertThat(new TestAllocator(allocationConfig.chunk(4, 4)).allocate(tests), contains(G.class));
+        assertThat(existingReports.loads, is(1));
+
+        // The plan can't be used for a different number of chunks, or a different set of tests
+        assertThat(new TestAllocator(allocationConfig.chunk(1, 3)).allocate(tests), contains(G.class));
+        assertThat(existingReports.loads, is(2));
+        new TestAllocator(allocationConfig.chunk(1, 4)).allocate(asList(A.class, B.class, C.class, D.class, E.class, F.class));
+        assertThat(existingReports.loads, is(3));
+    }
+
+    @Test
+    public void shouldOnlyExportThePlanWithoutRunningAnyTestsWhenConfigured() throws Exception {
+        ReportRepo existingReports = new MemoryReportRepo()
+                .addTestSuite(fakeTest(A.class, 1))
+                .addTestSuite(fakeTest(B.class, 1))
+                .addTestSuite(fakeTest(C.class, 2))
+                .addTestSuite(fakeTest(D.class, 2))
+                .addTestSuite(fakeTest(E.class, 2))
+                .addTestSuite(fakeTest(F.class, 3))
+                .addTestSuite(fakeTest(G.class, 6));
+        Path planFile = tempDir.getRoot().toPath().resolve("plans/allocation-plan");
+        List<Class<?>> tests = asList(A.class, B.class, C.class, D.class, E.class, F.class, G.class);
+
+        assertThat(new TestAllocator(allocationConfig().withExistingReports(existingReports).withExportedAllocationPlan(planFile).withOnlyExportingAllocationPlan(true).chunk(1, 4)).allocate(tests), isEmpty());
+
+        AllocationConfig.Builder allocationConfig = allocationConfig().withNoExistingReports().withAllocationPlan(planFile);
+        assertThat(new TestAllocator(allocationConfig.chunk(1, 4)).allocate(tests), contains(F.class, B.class));
+        assertThat(new TestAllocator(allocationConfig.chunk(4, 4)).allocate(tests), contains(G.class));
+    }
+
+    @Test
+    public void shouldSaveAReportOfHowAccuratelyTestDurationsWerePredicted() throws Exception {
+        ReportRepo existingReports = new MemoryReportRepo()
+                .addTestSuite(fakeTest(A.class, 1))
+                .addTestSuite(fakeTest(G.class, 6));
+        Path reportDir = tempDir.getRoot().toPath().resolve("reports");
+        TestAllocator allocator = new TestAllocator(allocationConfig().withExistingReports(existingReports).withAccuracyReportDir(reportDir).chunk(1, 1));
+        allocator.allocate(asList(A.class, G.class));
+
+        Map<String, Double> actualSeconds = new HashMap<>();
+        actualSeconds.put(A.class.getName(), 1.5);
+        actualSeconds.put(G.class.getName(), 5.0);
+        allocator.reportAccuracy(actualSeconds);
+
+        String report = new String(Files.readAllBytes(reportDir.resolve("accuracy-chunk-1-of-1.json")), UTF_8);
+        assertThat(report.contains("\"predictedSeconds\": 7.0,"), is(true));
+        assertThat(report.contains("\"actualSeconds\": 6.5,"), is(true));
+    }
+
+    @Test
+    public void shouldSplitTestClassesThatWouldTakeLongerThanAChunkByMethodWhenConfigured() throws Exception {
+        CountingReportRepo existingReports = new CountingReportRepo("history-1", new MemoryReportRepo()
+                .addTestSuite(fakeTest(A.class, 1))
+                .addTestSuite(fakeTest(B.class, 1))
+                .addTestSuite(fakeTest(C.class, 2))
+                .addTestSuite(fakeTest(D.class, 2))
+                .addTestSuite(fakeTest(E.class, 2))
+                .addTestSuite(fakeTest(F.class, 3))
+                .addTestSuite(testSuite()
+                        .withName(G.class.getName())
+                        .withTime(6)
+                        .withTestCase(testCase().withName("g1").withClassName(G.class.getName()).withTime(2).build())
+                        .withTestCase(testCase().withName("g2").withClassName(G.class.getName()).withTime(2).build())
+                        .withTestCase(testCase().withName("g3").withClassName(G.class.getName()).withTime(2).build())
+                        .build()));
+        AllocationCache allocationCache = AllocationCache.in(tempDir.newFolder("surefire-splitter").toPath());
+        AllocationConfig.Builder allocationConfig = allocationConfig().withExistingReports(existingReports).withSplitTestClasses();
+        AllocationConfig.Builder cachedAllocationConfig = allocationConfig().withExistingReports(existingReports).withSplitTestClasses().withAllocationCache(allocationCache);
+
+        List<Class<?>> tests = asList(A.class, B.class, C.class, D.class, E.class, F.class, G.class);
+
+        int chunksWithG = 0;
+        Map<String, Integer> timesMethodIsRun = new HashMap<>();
+        for (int chunkNumber = 1; chunkNumber <= 4; chunkNumber++) {
+            Allocation chunk = new TestAllocator(allocationConfig.chunk(chunkNumber, 4)).allocate(tests);
+            Allocation cachedChunk = new TestAllocator(cachedAllocationConfig.chunk(chunkNumber, 4)).allocate(tests);
+            for (Class<?> test : chunk) {
+                assertThat(test == G.class || chunk.getMethods(test) == null, is(true));
+            }
+            if (chunk.getMethods(G.class) != null) {
+                chunksWithG++;
+                assertThat(cachedChunk.getMethods(G.class).toString(), is(chunk.getMethods(G.class).toString()));
+                for (String method : asList("g1", "g2", "g3", "gNew")) {
+                    if (chunk.getMethods(G.class).includes(method)) {
+                        timesMethodIsRun.put(method, timesMethodIsRun.containsKey(method) ? timesMethodIsRun.get(method) + 1 : 1);
+                    }
+                }
+            }
+        }
+        assertThat(chunksWithG, is(2));
+        assertThat(timesMethodIsRun.get("g1"), is(1));
+        assertThat(timesMethodIsRun.get("g2"), is(1));
+        assertThat(timesMethodIsRun.get("g3"), is(1));
+        assertThat(timesMethodIsRun.get("gNew"), is(1));
+    }
+
+    @Test
+    public void shouldNotSplitTestClassesUnlessConfigured() {
+        ReportRepo existingReports = new MemoryReportRepo()
+                .addTestSuite(fakeTest(A.class, 1))
+                .addTestSuite(testSuite()
+                        .withName(G.class.getName())
+                        .withTime(6)
+                        .withTestCase(testCase().withName("g1").withClassName(G.class.getName()).withTime(3).build())
+                        .withTestCase(testCase().withName("g2").withClassName(G.class.getName()).withTime(3).build())
+                        .build());
+        AllocationConfig.Builder allocationConfig = allocationConfig().withExistingReports(existingReports);
+
+        for (int chunkNumber = 1; chunkNumber <= 2; chunkNumber++) {
+            Allocation chunk = new TestAllocator(allocationConfig.chunk(chunkNumber, 2)).allocate(asList(A.class, G.class));
+            assertThat(chunk.isSplittingTestClasses(), is(false));
+        }
+    }
+
+    @Test
+    public void shouldTakeTestsFromASharedWorkQueueLongestFirstWhenConfigured() throws Exception {
+        ReportRepo existingReports = new MemoryReportRepo()
+                .addTestSuite(fakeTest(A.class, 1))
+                .addTestSuite(fakeTest(B.class, 2))
+                .addTestSuite(fakeTest(C.class, 3));
+        AllocationConfig.Builder allocationConfig = allocationConfig()
+                .withExistingReports(existingReports)
+                .withWorkQueue(WorkQueue.in(tempDir.getRoot().toPath().resolve("work-queue")));
+        List<Class<?>> tests = asList(A.class, B.class, C.class);
+
+        TestAllocator first = new TestAllocator(allocationConfig.chunk(1, 2));
+        TestAllocator second = new TestAllocator(allocationConfig.chunk(2, 2));
+        assertThat(first.isUsingWorkQueue(), is(true));
+        Iterator<Class<?>> firstChunk = first.takeFromWorkQueue(tests).iterator();
+        Iterator<Class<?>> secondChunk = second.takeFromWorkQueue(tests).iterator();
+
+        assertThat(firstChunk.next(), is((Object) C.class));
+        assertThat(secondChunk.next(), is((Object) B.class));
+        assertThat(secondChunk.next(), is((Object) A.class));
+        assertThat(firstChunk.hasNext(), is(false));
+        assertThat(secondChunk.hasNext(), is(false));
+    }
+
+    @Test
+    public void shouldAllocateTestsUpFrontIfTheWorkQueueIsForDifferentTests() throws Exception {
+        WorkQueue workQueue = WorkQueue.in(tempDir.getRoot().toPath().resolve("work-queue"));
+        workQueue.join(Arrays.asList("com.example.SomeOtherTest"));
+        AllocationConfig.Builder allocationConfig = allocationConfig().withExistingReports(NO_EXISTING_REPORTS).withWorkQueue(workQueue);
+
+        List<Class<?>> tests = asList(A.class, B.class, C.class, D.class, E.class, F.class, G.class);
+        TestAllocator allocator = new TestAllocator(allocationConfig.chunk(1, 4));
+        assertThat(allocator.takeFromWorkQueue(tests), is(nullValue()));
+        assertThat(allocator.allocate(tests), contains(B.class, F.class));
+    }
+
+    @Test
+    public void shouldAllocateUsingHistoryLoadedInTheBackground() throws Exception {
+        CountingReportRepo existingReports = new CountingReportRepo("history-1", new MemoryReportRepo()
+                .addTestSuite(fakeTest(A.class, 1))
+                .addTestSuite(fakeTest(B.class, 1))
+                .addTestSuite(fakeTest(C.class, 2))
+                .addTestSuite(fakeTest(D.class, 2))
+                .addTestSuite(fakeTest(E.class, 2))
+                .addTestSuite(fakeTest(F.class, 3))
+                .addTestSuite(fakeTest(G.class, 6)));
+        TestAllocator allocator = new TestAllocator(allocationConfig().withExistingReports(existingReports).chunk(1, 4));
+        List<Class<?>> tests = asList(A.class, B.class, C.class, D.class, E.class, F.class, G.class);
+
+        allocator.loadHistoryInBackground();
+        allocator.loadHistoryInBackground();
+        assertThat(allocator.allocate(tests), contains(F.class, B.class));
+        assertThat(existingReports.loads, is(1));
+        assertThat(existingReports.loadedOn, is("surefire-splitter-history-loader"));
+    }
+
+    @Test
+    public void shouldOnlyLoadHistoryInTheBackgroundWhenTheAllocationHasntBeenCachedForTheSameHistory() throws Exception {
+        CountingReportRepo existingReports = new CountingReportRepo("history-1", new MemoryReportRepo()
+                .addTestSuite(fakeTest(A.class, 1))
+                .addTestSuite(fakeTest(B.class, 1))
+                .addTestSuite(fakeTest(C.class, 2))
+                .addTestSuite(fakeTest(D.class, 2))
+                .addTestSuite(fakeTest(E.class, 2))
+                .addTestSuite(fakeTest(F.class, 3))
+                .addTestSuite(fakeTest(G.class, 6)));
+        AllocationCache allocationCache = AllocationCache.in(tempDir.newFolder("surefire-splitter").toPath());
+        AllocationConfig.Builder allocationConfig = allocationConfig().withExistingReports(existingReports).withAllocationCache(allocationCache);
+        List<Class<?>> tests = asList(A.class, B.class, C.class, D.class, E.class, F.class, G.class);
+
+        TestAllocator firstAllocator = new TestAllocator(allocationConfig.chunk(1, 4));
+        firstAllocator.loadHistoryInBackground();
+        assertThat(firstAllocator.allocate(tests), contains(F.class, B.class));
+        assertThat(existingReports.loads, is(1));
+        assertThat(existingReports.loadedOn, is("surefire-splitter-history-loader"));
+
+        TestAllocator secondAllocator = new TestAllocator(allocationConfig.chunk(2, 4));
+        secondAllocator.loadHistoryInBackground();
+        assertThat(secondAllocator.allocate(tests), contains(C.class, E.class));
+        assertThat(existingReports.loads, is(1));
+
+        // New history: nothing's been saved for it yet
+        existingReports.fingerprint = "history-2";
+        TestAllocator thirdAllocator = new TestAllocator(allocationConfig.chunk(1, 4));
+        thirdAllocator.loadHistoryInBackground();
+        assertThat(thirdAllocator.allocate(tests), contains(F.class, B.class));
+        assertThat(existingReports.loads, is(2));
+        assertThat(existingReports.loadedOn, is("surefire-splitter-history-loader"));
+    }
+
+    @Test
+    public void shouldNotLoadHistoryInTheBackgroundWhenTurnedOff() throws Exception {
+        CountingReportRepo existingReports = new CountingReportRepo("history-1", new MemoryReportRepo()
+                .addTestSuite(fakeTest(A.class, 1))
+                .addTestSuite(fakeTest(B.class, 2)));
+        TestAllocator allocator = new TestAllocator(allocationConfig().withExistingReports(existingReports).withPrefetchingHistory(false).chunk(1, 2));
+
+        allocator.loadHistoryInBackground();
+        assertThat(allocator.allocate(asList(A.class, B.class)), contains(B.class));
+        assertThat(existingReports.loads, is(1));
+        assertThat(existingReports.loadedOn, is(Thread.currentThread().getName()));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldFailToAllocateIfLoadingHistoryInTheBackgroundFails() {
+        TestAllocator allocator = new TestAllocator(allocationConfig().withExistingReports(new ReportRepo() {
+            @Override
+            public List<JunitTestSuite> getTestSuites() {
+                throw new IllegalStateException("Couldn't load history");
+            }
+        }).chunk(1, 2));
+
+        allocator.loadHistoryInBackground();
+        allocator.allocate(asList(A.class, B.class));
+    }
+
+    private static class CountingReportRepo implements FingerprintedReportRepo {
+        private final ReportRepo delegate;
+        private String fingerprint;
+        private int loads;
+        private String loadedOn;
+
+        CountingReportRepo(String fingerprint, ReportRepo delegate) {
+            this.fingerprint = fingerprint;
+            this.delegate = delegate;
+        }
+
+        @Override
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        @Override
+        public List<JunitTestSuite> getTestSuites() {
+            loads++;
+            loadedOn = Thread.currentThread().getName();
+            return delegate.getTestSuites();
+        }
+    }
+
     private JunitTestSuite fakeTest(Class<?> testClass, double time) {
         return testSuite()
                 .withName(testClass.getName())
@@ -194,6 +569,10 @@ public class TestAllocatorTest {
         return Arrays.asList(classes);
     }
 
+    private List<String> asList(String... strings) {
+        return Arrays.asList(strings);
+    }
+
     private Matcher<Iterable<Class<?>>> isEmpty() {
         return contains();
     }
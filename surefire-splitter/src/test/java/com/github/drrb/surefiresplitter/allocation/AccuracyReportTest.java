@@ -0,0 +1,70 @@
+/**
+ * Surefire Splitter
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.allocation;
+
+import com.github.drrb.surefiresplitter.faketests.A;
+import com.github.drrb.surefiresplitter.faketests.B;
+import com.github.drrb.surefiresplitter.faketests.C;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+public class AccuracyReportTest {
+
+    @Test
+    public void shouldComparePredictedAndActualDurationsOfTheTestsInAChunk() {
+        Chunks chunks = new Chunks(2);
+        chunks.getByIndex(0).addTestSuite(new TimedTest(A.class, Duration.of(4.0)));
+        chunks.getByIndex(1).addTestSuite(new TimedTest(B.class, Duration.of(2.0)));
+        chunks.getByIndex(1).addTestSuite(new TimedTest(C.class, Duration.estimated(1.0)));
+        AllocationPlan plan = AllocationPlan.of(chunks, 2);
+        int chunkNumber = chunks.get(1) == chunks.getByIndex(1) ? 1 : 2;
+        Map<String, Double> actualSeconds = new LinkedHashMap<>();
+        actualSeconds.put(B.class.getName(), 2.5);
+        actualSeconds.put(C.class.getName(), 0.2);
+
+        AccuracyReport report = AccuracyReport.of(plan, chunkNumber, actualSeconds);
+
+        assertEquals(3.0, report.getPredictedSeconds(), 0.0001);
+        assertEquals(2.7, report.getActualSeconds(), 0.0001);
+        assertEquals(4.0 / 3.5, report.getPredictedImbalance(), 0.0001);
+        assertThat(report.getTestClasses().size(), is(2));
+        assertThat(report.getWorstMisprediction().getTestClass(), is(C.class.getName()));
+        assertEquals(-0.8, report.getWorstMisprediction().getErrorSeconds(), 0.0001);
+    }
+
+    @Test
+    public void shouldBeSavedAsJson() {
+        Chunks chunks = new Chunks(1);
+        chunks.getByIndex(0).addTestSuite(new TimedTest(A.class, Duration.of(2.0)));
+        Map<String, Double> actualSeconds = new LinkedHashMap<>();
+        actualSeconds.put(A.class.getName(), 3.0);
+
+        String json = AccuracyReport.of(AllocationPlan.of(chunks, 1), 1, actualSeconds).toJson();
+
+        assertThat(json, containsString("\"predictedSeconds\": 2.0,"));
+        assertThat(json, containsString("\"relativeError\": 0.5,"));
+        assertThat(json, containsString("\"worstMisprediction\": {\"testClass\": \"com.github.drrb.surefiresplitter.faketests.A\", \"predictedSeconds\": 2.0, \"actualSeconds\": 3.0, \"errorSeconds\": 1.0, \"relativeError\": 0.5, \"estimated\": false},"));
+    }
+}
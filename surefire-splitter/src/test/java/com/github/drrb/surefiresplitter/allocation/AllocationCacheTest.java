@@ -0,0 +1,69 @@
+/**
+ * Surefire Splitter
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.allocation;
+
+import com.github.drrb.surefiresplitter.faketests.A;
+import com.github.drrb.surefiresplitter.faketests.B;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class AllocationCacheTest {
+
+    @Rule
+    public final TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void shouldOnlyKeepTheMostRecentlySavedAllocations() throws Exception {
+        List<Class<?>> tests = Arrays.<Class<?>>asList(A.class, B.class);
+        Chunks chunks = new Chunks(2);
+        chunks.getByIndex(0).addTestSuite(new TimedTest(A.class, Duration.of(1.0)));
+        chunks.getByIndex(1).addTestSuite(new TimedTest(B.class, Duration.of(1.0)));
+        AllocationPlan plan = AllocationPlan.of(chunks, 2);
+        Path directory = tempDir.getRoot().toPath();
+        AllocationCache allocationCache = AllocationCache.in(directory);
+
+        List<AllocationCache.Key> keys = new ArrayList<>();
+        for (int build = 1; build <= AllocationCache.MAX_SAVED_ALLOCATIONS + 2; build++) {
+            AllocationCache.Key key = allocationCache.key(tests, "history-" + build, 2, "");
+            allocationCache.save(key, plan);
+            // Saved one after the other, as far as the file system can tell
+            Files.setLastModifiedTime(allocationCache.getFile(key), FileTime.fromMillis(System.currentTimeMillis() - 60000 + build * 1000));
+            keys.add(key);
+        }
+
+        assertThat(directory.toFile().list().length, is(AllocationCache.MAX_SAVED_ALLOCATIONS));
+        assertThat(allocationCache.load(keys.get(0), tests), is(nullValue()));
+        assertThat(allocationCache.load(keys.get(1), tests), is(nullValue()));
+        assertThat(allocationCache.load(keys.get(2), tests), is(notNullValue()));
+        assertThat(allocationCache.load(keys.get(keys.size() - 1), tests), is(notNullValue()));
+        assertThat(allocationCache.hasAllocationsFor("history-1", 2, ""), is(false));
+    }
+}
@@ -0,0 +1,84 @@
+/**
+ * Surefire Splitter
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.allocation;
+
+import com.github.drrb.surefiresplitter.faketests.A;
+import com.github.drrb.surefiresplitter.faketests.B;
+import com.github.drrb.surefiresplitter.faketests.C;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class AllocationPlanTest {
+
+    @Rule
+    public final TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void shouldSaveAndLoadTheTestsInEachChunkWithTheirPredictedDurations() throws Exception {
+        TimedTest a = new TimedTest(A.class, Duration.of(3.0));
+        TimedTest b = new TimedTest(B.class, Duration.of(2.0));
+        TimedTest c = new TimedTest(C.class, Duration.estimated(1.5));
+        Chunks chunks = new Chunks(2);
+        chunks.getByIndex(0).addTestSuite(a);
+        chunks.getByIndex(1).addTestSuite(b);
+        chunks.getByIndex(1).addTestSuite(c);
+        AllocationPlan plan = AllocationPlan.of(chunks, 2);
+        Path file = tempDir.getRoot().toPath().resolve("plan");
+        plan.save(file);
+
+        AllocationPlan loaded = AllocationPlan.load(file, Arrays.<Class<?>>asList(A.class, B.class, C.class));
+        assertThat(loaded.getTotalChunks(), is(2));
+        for (int chunkNumber = 1; chunkNumber <= 2; chunkNumber++) {
+            assertThat(testsIn(loaded.getAllocation(chunkNumber)), is(testsIn(plan.getAllocation(chunkNumber))));
+            assertThat(loaded.getPredictedDuration(chunkNumber).getSeconds(), is(plan.getPredictedDuration(chunkNumber).getSeconds()));
+            for (TimedTest test : loaded.getTests(chunkNumber)) {
+                assertThat(test.getDuration().isUnknown(), is(test.getTestClass() == C.class));
+            }
+        }
+    }
+
+    @Test
+    public void shouldNotLoadAPlanForDifferentTests() throws Exception {
+        Chunks chunks = new Chunks(1);
+        chunks.getByIndex(0).addTestSuite(new TimedTest(A.class, Duration.of(3.0)));
+        Path file = tempDir.getRoot().toPath().resolve("plan");
+        AllocationPlan.of(chunks, 1).save(file);
+
+        assertThat(AllocationPlan.load(file, Collections.<Class<?>>singletonList(B.class)), is(nullValue()));
+        assertThat(AllocationPlan.load(file, Arrays.<Class<?>>asList(A.class, B.class)), is(nullValue()));
+    }
+
+    private List<Class<?>> testsIn(Allocation allocation) {
+        List<Class<?>> tests = new ArrayList<>();
+        for (Class<?> test : allocation) {
+            tests.add(test);
+        }
+        return tests;
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Surefire Splitter
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.allocation;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class BalancedAllocationStrategyTest {
+
+    @Test
+    public void shouldEvenOutChunksThatGreedyAllocationLeavesUneven() {
+        double[] durations = {3, 3, 2, 2, 2};
+
+        assertThat(longestChunk(durations, new GreedyAllocationStrategy().allocate(durations, 2), 2), is(7.0));
+        assertThat(longestChunk(durations, new BalancedAllocationStrategy().allocate(durations, 2), 2), is(6.0));
+    }
+
+    @Test
+    public void shouldNeverDoWorseThanGreedyAllocation() {
+        Random random = new Random(42);
+        for (int run = 0; run < 20; run++) {
+            double[] durations = new double[200];
+            for (int i = 0; i < durations.length; i++) {
+                durations[i] = Math.exp(random.nextGaussian());
+            }
+            Arrays.sort(durations);
+            reverse(durations);
+            int totalChunks = 2 + random.nextInt(30);
+
+            double greedy = longestChunk(durations, new GreedyAllocationStrategy().allocate(durations, totalChunks), totalChunks);
+            double balanced = longestChunk(durations, new BalancedAllocationStrategy().allocate(durations, totalChunks), totalChunks);
+            assertThat(balanced <= greedy, is(true));
+        }
+    }
+
+    @Test
+    public void shouldAlwaysComeUpWithTheSameAllocation() {
+        double[] durations = {9, 8, 7, 7, 5, 4, 4, 3, 2, 1, 1, 1};
+        int[] first = new BalancedAllocationStrategy().allocate(durations, 5);
+        int[] second = new BalancedAllocationStrategy().allocate(durations.clone(), 5);
+        assertThat(Arrays.equals(first, second), is(true));
+    }
+
+    private static double longestChunk(double[] durations, int[] allocation, int totalChunks) {
+        double[] chunkDurations = new double[totalChunks];
+        for (int i = 0; i < durations.length; i++) {
+            chunkDurations[allocation[i]] += durations[i];
+        }
+        double longest = 0.0;
+        for (double chunkDuration : chunkDurations) {
+            longest = Math.max(longest, chunkDuration);
+        }
+        return longest;
+    }
+
+    private static void reverse(double[] values) {
+        for (int i = 0, j = values.length - 1; i < j; i++, j--) {
+            double value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+    }
+}
@@ -0,0 +1,93 @@
+/**
+ * Surefire Splitter
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.allocation;
+
+import com.github.drrb.surefiresplitter.faketests.A;
+import com.github.drrb.surefiresplitter.faketests.B;
+import com.github.drrb.surefiresplitter.faketests.C;
+import com.github.drrb.surefiresplitter.faketests.D;
+import com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestSuite;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestSuite.testSuite;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ChunkOrderTest {
+
+    @Test
+    public void shouldPutLongestTestsFirst() {
+        List<TimedTest> tests = tests(
+                new TimedTest(A.class, Duration.of(1.0)),
+                new TimedTest(B.class, Duration.of(3.0)),
+                new TimedTest(C.class, Duration.of(2.0))
+        );
+        ChunkOrder.LONGEST.sort(tests, null);
+        assertThat(classesOf(tests), is(Arrays.<Class<?>>asList(B.class, C.class, A.class)));
+    }
+
+    @Test
+    public void shouldPutMostRecentlyFailedTestsFirst() {
+        DurationIndex oldRuns = DurationIndex.of(Arrays.asList(
+                run(A.class, 0),
+                run(B.class, 0),
+                run(C.class, 1),
+                run(B.class, 2),
+                run(D.class, 0)
+        ));
+        List<TimedTest> tests = tests(
+                new TimedTest(A.class, Duration.of(1.0)),
+                new TimedTest(B.class, Duration.of(1.0)),
+                new TimedTest(C.class, Duration.of(1.0)),
+                new TimedTest(D.class, Duration.of(1.0))
+        );
+        ChunkOrder.FAILED.sort(tests, oldRuns);
+        assertThat(classesOf(tests), is(Arrays.<Class<?>>asList(C.class, B.class, A.class, D.class)));
+    }
+
+    @Test
+    public void shouldGroupTestsByPackage() {
+        List<TimedTest> tests = tests(
+                new TimedTest(A.class, Duration.of(3.0)),
+                new TimedTest(com.github.drrb.surefiresplitter.otherfaketests.B.class, Duration.of(2.0)),
+                new TimedTest(C.class, Duration.of(1.0))
+        );
+        ChunkOrder.PACKAGE.sort(tests, null);
+        assertThat(classesOf(tests), is(Arrays.<Class<?>>asList(A.class, C.class, com.github.drrb.surefiresplitter.otherfaketests.B.class)));
+    }
+
+    private static List<TimedTest> tests(TimedTest... tests) {
+        return new ArrayList<>(Arrays.asList(tests));
+    }
+
+    private static List<Class<?>> classesOf(List<TimedTest> tests) {
+        List<Class<?>> classes = new ArrayList<>();
+        for (TimedTest test : tests) {
+            classes.add(test.getTestClass());
+        }
+        return classes;
+    }
+
+    private static JunitTestSuite run(Class<?> testClass, int failures) {
+        return testSuite().withName(testClass.getName()).withTime(1.0).withFailures(failures).build();
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * Surefire Splitter
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.allocation;
+
+import com.github.drrb.surefiresplitter.faketests.*;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ChunksTest {
+
+    @Test
+    public void shouldPickTheHighestNumberedChunkWhenChunksAreEquallyLong() {
+        Chunks chunks = new Chunks(3);
+        assertThat(chunks.getLongest().number(), is(3));
+
+        chunks.getByIndex(0).addTestSuite(timedTest(A.class, 2));
+        chunks.getByIndex(1).addTestSuite(timedTest(B.class, 2));
+        assertThat(chunks.getLongest().number(), is(2));
+    }
+
+    private TimedTest timedTest(Class<?> testClass, double seconds) {
+        return new TimedTest(testClass, Duration.of(seconds));
+    }
+}
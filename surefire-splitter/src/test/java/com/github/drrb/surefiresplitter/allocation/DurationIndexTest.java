@@ -0,0 +1,104 @@
+/**
+ * Surefire Splitter
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.allocation;
+
+import com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestSuite;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestCase.testCase;
+import static com.github.drrb.surefiresplitter.spi.JunitReport.JunitTestSuite.testSuite;
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+public class DurationIndexTest {
+
+    @Test
+    public void shouldLookUpDurationsByClassName() {
+        DurationIndex index = DurationIndex.of(Arrays.asList(suite("com.example.FirstTest", 1.5), suite("com.example.SecondTest", 2.5)));
+        assertThat(index.get("com.example.SecondTest").getSeconds(), is(2.5));
+        assertThat(index.isEmpty(), is(false));
+    }
+
+    @Test
+    public void shouldUseTheFirstRunOfATestWhenThereAreSeveral() {
+        DurationIndex index = DurationIndex.of(Arrays.asList(suite("com.example.FirstTest", 1.5), suite("com.example.FirstTest", 3.0)));
+        assertThat(index.get("com.example.FirstTest").getSeconds(), is(1.5));
+    }
+
+    @Test
+    public void shouldReturnUnknownDurationForTestsThatHaventRunBefore() {
+        DurationIndex index = DurationIndex.of(Collections.<JunitTestSuite>emptyList());
+        assertThat(index.get("com.example.NewTest").isUnknown(), is(true));
+        assertThat(index.isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldLookUpTestMethodDurationsFromTheSameRun() {
+        JunitTestSuite firstRun = testSuite().withName("com.example.FirstTest").withTime(3.0)
+                .withTestCase(testCase().withName("one").withClassName("com.example.FirstTest").withTime(1.0).build())
+                .withTestCase(testCase().withName("two").withClassName("com.example.FirstTest").withTime(2.0).build())
+                .build();
+        JunitTestSuite secondRun = testSuite().withName("com.example.FirstTest").withTime(9.0)
+                .withTestCase(testCase().withName("one").withClassName("com.example.FirstTest").withTime(9.0).build())
+                .build();
+        DurationIndex index = DurationIndex.of(Arrays.asList(firstRun, secondRun));
+        assertThat(index.getTestCases("com.example.FirstTest").size(), is(2));
+        assertThat(index.getTestCases("com.example.FirstTest").get("one").getSeconds(), is(1.0));
+        assertThat(index.getTestCases("com.example.FirstTest").get("two").getSeconds(), is(2.0));
+        assertThat(index.getTestCases("com.example.NewTest").isEmpty(), is(true));
+    }
+
+    @Test
+    public void shouldEstimateDurationsFromAllRunsOfATestWhenConfigured() {
+        List<JunitTestSuite> runs = Arrays.asList(
+                suite("com.example.FirstTest", 4.0),
+                suite("com.example.FirstTest", 1.0),
+                suite("com.example.FirstTest", 2.0),
+                suite("com.example.FirstTest", 3.0),
+                suite("com.example.FirstTest", 10.0)
+        );
+        assertThat(DurationIndex.of(runs, DurationEstimate.FIRST).get("com.example.FirstTest").getSeconds(), is(4.0));
+        assertThat(DurationIndex.of(runs, DurationEstimate.MEDIAN).get("com.example.FirstTest").getSeconds(), is(3.0));
+        assertEquals(7.6, DurationIndex.of(runs, DurationEstimate.P90).get("com.example.FirstTest").getSeconds(), 0.0001);
+        assertEquals(4.4137, DurationIndex.of(runs, DurationEstimate.EWMA).get("com.example.FirstTest").getSeconds(), 0.0001);
+    }
+
+    @Test
+    public void shouldEstimateTestMethodDurationsFromTheRunsTheyWereIn() {
+        JunitTestSuite firstRun = testSuite().withName("com.example.FirstTest").withTime(3.0)
+                .withTestCase(testCase().withName("one").withClassName("com.example.FirstTest").withTime(1.0).build())
+                .withTestCase(testCase().withName("two").withClassName("com.example.FirstTest").withTime(2.0).build())
+                .build();
+        JunitTestSuite secondRun = testSuite().withName("com.example.FirstTest").withTime(9.0)
+                .withTestCase(testCase().withName("one").withClassName("com.example.FirstTest").withTime(9.0).build())
+                .build();
+        DurationIndex index = DurationIndex.of(Arrays.asList(firstRun, secondRun), DurationEstimate.MEDIAN);
+        assertThat(index.get("com.example.FirstTest").getSeconds(), is(6.0));
+        assertThat(index.getTestCases("com.example.FirstTest").get("one").getSeconds(), is(5.0));
+        assertThat(index.getTestCases("com.example.FirstTest").get("two").getSeconds(), is(2.0));
+    }
+
+    private JunitTestSuite suite(String name, double time) {
+        return testSuite().withName(name).withTime(time).build();
+    }
+}
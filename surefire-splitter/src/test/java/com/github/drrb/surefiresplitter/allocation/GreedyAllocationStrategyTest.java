@@ -0,0 +1,40 @@
+/**
+ * Surefire Splitter
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.allocation;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class GreedyAllocationStrategyTest {
+
+    @Test
+    public void shouldPutEachTestInTheShortestChunkSoFar() {
+        double[] durations = {5, 3, 1, 10, 3};
+        assertThat(Arrays.toString(new GreedyAllocationStrategy().allocate(durations, 3)), is("[0, 1, 2, 2, 1]"));
+    }
+
+    @Test
+    public void shouldPickTheLowestNumberedChunkWhenChunksAreEquallyShort() {
+        double[] durations = {1, 1, 1, 1};
+        assertThat(Arrays.toString(new GreedyAllocationStrategy().allocate(durations, 3)), is("[0, 1, 2, 0]"));
+    }
+}
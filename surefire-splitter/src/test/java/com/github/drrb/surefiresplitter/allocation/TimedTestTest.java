@@ -0,0 +1,97 @@
+/**
+ * Surefire Splitter
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.allocation;
+
+import com.github.drrb.surefiresplitter.faketests.A;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class TimedTestTest {
+
+    @Test
+    public void shouldSplitATestClassIntoPartsThatTakeAboutTheSameTime() {
+        Map<String, Duration> testCases = new LinkedHashMap<>();
+        testCases.put("quick", Duration.of(1.0));
+        testCases.put("slow", Duration.of(4.0));
+        testCases.put("medium", Duration.of(2.0));
+        testCases.put("alsoMedium", Duration.of(2.0));
+
+        List<TimedTest> parts = new TimedTest(A.class, Duration.of(18.0)).splitByMethod(2, testCases);
+
+        assertThat(parts.size(), is(2));
+        assertThat(parts.get(0).getMethods().isExclusive(), is(true));
+        assertThat(parts.get(0).getMethods().getMethods(), is(names("alsoMedium", "medium")));
+        assertThat(parts.get(0).getDuration().getSeconds(), is(10.0));
+        assertThat(parts.get(1).getMethods().isExclusive(), is(false));
+        assertThat(parts.get(1).getMethods().getMethods(), is(names("alsoMedium", "medium")));
+        assertThat(parts.get(1).getDuration().getSeconds(), is(8.0));
+    }
+
+    @Test
+    public void shouldRunNewMethodsInTheFirstPartOnly() {
+        Map<String, Duration> testCases = new LinkedHashMap<>();
+        testCases.put("first", Duration.of(1.0));
+        testCases.put("second", Duration.of(1.0));
+
+        List<TimedTest> parts = new TimedTest(A.class, Duration.of(2.0)).splitByMethod(2, testCases);
+
+        assertThat(parts.get(0).getMethods().includes("first"), is(true));
+        assertThat(parts.get(0).getMethods().includes("second"), is(false));
+        assertThat(parts.get(0).getMethods().includes("brandNew"), is(true));
+        assertThat(parts.get(1).getMethods().includes("first"), is(false));
+        assertThat(parts.get(1).getMethods().includes("second"), is(true));
+        assertThat(parts.get(1).getMethods().includes("brandNew"), is(false));
+    }
+
+    @Test
+    public void shouldNotSplitATestClassWithOnlyOneMethod() {
+        Map<String, Duration> testCases = new LinkedHashMap<>();
+        testCases.put("only", Duration.of(10.0));
+        TimedTest test = new TimedTest(A.class, Duration.of(10.0));
+
+        List<TimedTest> parts = test.splitByMethod(4, testCases);
+
+        assertThat(parts.size(), is(1));
+        assertThat(parts.get(0).getMethods() == null, is(true));
+    }
+
+    @Test
+    public void shouldCombinePartsThatEndUpInTheSameChunk() {
+        TestMethods first = TestMethods.allExcept(names("b", "c"));
+        TestMethods second = TestMethods.only(names("b"));
+        TestMethods third = TestMethods.only(names("c"));
+
+        assertThat(first.plus(second).includes("b"), is(true));
+        assertThat(first.plus(second).includes("c"), is(false));
+        assertThat(second.plus(third).getMethods(), is(names("b", "c")));
+        assertThat(first.plus(second).plus(third).includes("c"), is(true));
+    }
+
+    private static Set<String> names(String... names) {
+        return new TreeSet<>(Arrays.asList(names));
+    }
+}
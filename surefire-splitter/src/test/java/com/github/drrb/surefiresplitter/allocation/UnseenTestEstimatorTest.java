@@ -0,0 +1,113 @@
+/**
+ * Surefire Splitter
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.allocation;
+
+import com.github.drrb.surefiresplitter.faketests.A;
+import com.github.drrb.surefiresplitter.faketests.B;
+import com.github.drrb.surefiresplitter.otherfaketests.H;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+
+public class UnseenTestEstimatorTest {
+
+    @Test
+    public void shouldEstimateDurationFromTheTimePerTestMethodOfTestsInTheSamePackage() {
+        UnseenTestEstimator estimator = new UnseenTestEstimator(Arrays.asList(
+                new TimedTest(OneTest.class, Duration.of(2.0)),
+                new TimedTest(ThreeTests.class, Duration.of(3.0))
+        ));
+        Duration estimate = estimator.estimate(TwoTests.class);
+        assertEquals(3.0, estimate.getSeconds(), 0.0001);
+        assertThat(estimate.isUnknown(), is(true));
+    }
+
+    @Test
+    public void shouldEstimateDurationFromBytecodeSizeOfTestsWithoutTestMethods() {
+        UnseenTestEstimator estimator = new UnseenTestEstimator(Arrays.asList(new TimedTest(A.class, Duration.of(2.0))));
+        assertEquals(2.0, estimator.estimate(B.class).getSeconds(), 0.0001);
+    }
+
+    @Test
+    public void shouldCompareWithTestsInOtherPackagesWhenNoneInTheSamePackageHaveRun() {
+        UnseenTestEstimator estimator = new UnseenTestEstimator(Arrays.asList(new TimedTest(OneTest.class, Duration.of(2.0))));
+        assertEquals(4.0, estimator.estimate(H.class).getSeconds(), 0.0001);
+    }
+
+    @Test
+    public void shouldNotEstimateDurationWhenNoTestsHaveRun() {
+        UnseenTestEstimator estimator = new UnseenTestEstimator(Collections.<TimedTest>emptyList());
+        assertThat(estimator.estimate(OneTest.class), is(Duration.UNKNOWN));
+    }
+
+    @Test
+    public void shouldCountJunit4AndJunit3TestMethods() {
+        assertThat(UnseenTestEstimator.countTestMethods(ThreeTests.class), is(3));
+        assertThat(UnseenTestEstimator.countTestMethods(JunitThreeStyleTests.class), is(2));
+        assertThat(UnseenTestEstimator.countTestMethods(A.class), is(0));
+    }
+
+    public static class OneTest {
+        @Test
+        public void one() {
+        }
+    }
+
+    public static class TwoTests {
+        @Test
+        public void one() {
+        }
+
+        @Test
+        public void two() {
+        }
+    }
+
+    public static class ThreeTests {
+        @Test
+        public void one() {
+        }
+
+        @Test
+        public void two() {
+        }
+
+        @Test
+        public void three() {
+        }
+
+        public void notATest() {
+        }
+    }
+
+    public static class JunitThreeStyleTests {
+        public void testOne() {
+        }
+
+        public void testTwo() {
+        }
+
+        public void setUp() {
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * Surefire Splitter
+ * Copyright (C) 2016 drrb
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with Surefire Splitter. If not, see <http://www.gnu.org/licenses />.
+ */
+package com.github.drrb.surefiresplitter.allocation;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class WorkQueueTest {
+
+    @Rule
+    public final TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void shouldHandOutEachTestOnceBetweenEveryoneUsingTheQueue() throws Exception {
+        Path file = tempDir.getRoot().toPath().resolve("queues/work-queue");
+        WorkQueue first = WorkQueue.in(file);
+        WorkQueue second = WorkQueue.in(file);
+
+        assertThat(first.join(Arrays.asList("com.example.SlowTest", "com.example.MediumTest", "com.example.QuickTest")), is(true));
+        assertThat(second.join(Arrays.asList("com.example.QuickTest", "com.example.MediumTest", "com.example.SlowTest")), is(true));
+
+        assertThat(first.take(), is("com.example.SlowTest"));
+        assertThat(second.take(), is("com.example.MediumTest"));
+        assertThat(second.take(), is("com.example.QuickTest"));
+        assertThat(first.take(), is(nullValue()));
+        assertThat(second.take(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldRefuseToJoinAQueueOfDifferentTests() throws Exception {
+        Path file = tempDir.getRoot().toPath().resolve("work-queue");
+        assertThat(WorkQueue.in(file).join(Arrays.asList("com.example.FirstTest", "com.example.SecondTest")), is(true));
+        assertThat(WorkQueue.in(file).join(Arrays.asList("com.example.FirstTest")), is(false));
+    }
+
+    @Test
+    public void shouldRefuseToJoinAQueueThatsAlreadyBeenUsedUp() throws Exception {
+        Path file = tempDir.getRoot().toPath().resolve("work-queue");
+        WorkQueue previousRun = WorkQueue.in(file);
+        assertThat(previousRun.join(Arrays.asList("com.example.FirstTest", "com.example.SecondTest")), is(true));
+        assertThat(previousRun.take(), is("com.example.FirstTest"));
+        assertThat(WorkQueue.in(file).join(Arrays.asList("com.example.FirstTest", "com.example.SecondTest")), is(true));
+        assertThat(previousRun.take(), is("com.example.SecondTest"));
+        assertThat(previousRun.take(), is(nullValue()));
+
+        // e.g. running the same build again without cleaning
+        assertThat(WorkQueue.in(file).join(Arrays.asList("com.example.FirstTest", "com.example.SecondTest")), is(false));
+    }
+
+    @Test
+    public void shouldJoinAQueueThatsBeenUsedUpInTheSameRunWithoutTakingAnything() throws Exception {
+        Path file = tempDir.getRoot().toPath().resolve("work-queue");
+        WorkQueue firstChunk = WorkQueue.in(file, "Build/12/Test/1/unit-tests");
+        assertThat(firstChunk.join(Arrays.asList("com.example.FirstTest", "com.example.SecondTest")), is(true));
+        assertThat(firstChunk.take(), is("com.example.FirstTest"));
+        assertThat(firstChunk.take(), is("com.example.SecondTest"));
+
+        WorkQueue lateChunk = WorkQueue.in(file, "Build/12/Test/1/unit-tests");
+        assertThat(lateChunk.join(Arrays.asList("com.example.FirstTest", "com.example.SecondTest")), is(true));
+        assertThat(lateChunk.take(), is(nullValue()));
+    }
+
+    @Test
+    public void shouldStartAgainWithAQueueLeftOverFromAnotherRun() throws Exception {
+        Path file = tempDir.getRoot().toPath().resolve("work-queue");
+        WorkQueue previousRun = WorkQueue.in(file, "Build/11/Test/1/unit-tests");
+        assertThat(previousRun.join(Arrays.asList("com.example.FirstTest", "com.example.SecondTest")), is(true));
+        assertThat(previousRun.take(), is("com.example.FirstTest"));
+
+        WorkQueue thisRun = WorkQueue.in(file, "Build/12/Test/1/unit-tests");
+        assertThat(thisRun.join(Arrays.asList("com.example.FirstTest", "com.example.SecondTest")), is(true));
+        assertThat(thisRun.take(), is("com.example.FirstTest"));
+        assertThat(thisRun.take(), is("com.example.SecondTest"));
+        assertThat(thisRun.take(), is(nullValue()));
+    }
+}